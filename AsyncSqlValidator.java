@@ -0,0 +1,170 @@
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs injection checks off the calling thread, concurrently with conversion and prepare.
+ * <p>
+ * Checks run on a small bounded pool of daemon threads. Warnings go to a {@link WarningSink}
+ * once they are known. Under {@link Policy#ASYNC_LOG_ONLY} the caller never waits, and checks
+ * that do not fit in the queue are dropped and counted. Under
+ * {@link Policy#ASYNC_REJECT_BEFORE_EXECUTE} the statement is wrapped so that executing it fails
+ * when a verdict with warnings has already arrived; when the queue is full the check runs on the
+ * caller instead, so no verdict is lost.
+ */
+@Slf4j
+public class AsyncSqlValidator implements AutoCloseable {
+
+    public enum Policy {
+        /** Validate inline before preparing; warnings are part of the ConversionResult */
+        SYNC,
+        /** Validate in the background and only report to the sink */
+        ASYNC_LOG_ONLY,
+        /** Validate in the background; executing a statement already found suspicious throws */
+        ASYNC_REJECT_BEFORE_EXECUTE
+    }
+
+    /**
+     * Receives the warnings of statements that have any; called on a validation thread
+     */
+    @FunctionalInterface
+    public interface WarningSink {
+        void accept(String originalSql, List<String> warnings);
+    }
+
+    public static final WarningSink LOGGING_SINK = (sql, warnings) -> {
+        log.warn("SQL Security Warnings for: {}", sql);
+        warnings.forEach(warning -> log.warn("  - {}", warning));
+    };
+
+    private final Policy policy;
+    private final Function<String, List<String>> checks;
+    private final WarningSink sink;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder dropped = new LongAdder();
+
+    public AsyncSqlValidator(Policy policy, Function<String, List<String>> checks, WarningSink sink,
+                             int threads, int queueSize) {
+        if (policy == Policy.SYNC) {
+            throw new IllegalArgumentException("AsyncSqlValidator needs an asynchronous policy");
+        }
+        this.policy = policy;
+        this.checks = checks;
+        this.sink = sink;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), daemonThreads(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory daemonThreads() {
+        var counter = new AtomicInteger();
+        return task -> {
+            var thread = new Thread(task, "sql-validator-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Checks skipped because the queue was full (log-only policy)
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Start validating the SQL; the future completes with its warnings, possibly empty
+     */
+    public CompletableFuture<List<String>> submit(String originalSql) {
+        var verdict = new CompletableFuture<List<String>>();
+        Runnable task = () -> validate(originalSql, verdict);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (policy == Policy.ASYNC_REJECT_BEFORE_EXECUTE) {
+                task.run();
+            } else {
+                dropped.increment();
+                verdict.complete(List.of());
+            }
+        }
+        return verdict;
+    }
+
+    private void validate(String originalSql, CompletableFuture<List<String>> verdict) {
+        try {
+            var warnings = checks.apply(originalSql);
+            if (!warnings.isEmpty()) {
+                sink.accept(originalSql, warnings);
+            }
+            verdict.complete(warnings);
+        } catch (RuntimeException e) {
+            log.warn("Injection validation failed for: {}", originalSql, e);
+            verdict.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Apply the policy to a prepared statement: returned as is for log-only, otherwise wrapped so
+     * execute and addBatch fail once the verdict is known to contain warnings
+     */
+    public PreparedStatement guard(PreparedStatement pstmt, CompletableFuture<List<String>> verdict) {
+        if (policy != Policy.ASYNC_REJECT_BEFORE_EXECUTE) {
+            return pstmt;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                var name = method.getName();
+                switch (name) {
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> {
+                        if (name.startsWith("execute") || name.equals("addBatch")) {
+                            checkVerdict(verdict);
+                        }
+                    }
+                }
+                try {
+                    return method.invoke(pstmt, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    private static void checkVerdict(CompletableFuture<List<String>> verdict) throws SQLException {
+        // A verdict still pending, or a failed check, lets the statement run
+        if (verdict.isDone() && !verdict.isCompletedExceptionally()) {
+            var warnings = verdict.join();
+            if (!warnings.isEmpty()) {
+                throw new SQLException(STR."Statement rejected by injection validation: \{warnings}");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
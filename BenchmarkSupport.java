@@ -0,0 +1,105 @@
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Helpers shared by the JMH benchmarks
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Benchmark corpus: each query shape renders any number of variants that differ only in literal values
+     */
+    enum Query {
+        /** Single-row lookup by primary key */
+        POINT_LOOKUP,
+        /** The multi-join aggregate from the converter's main() */
+        COMPLEX_JOIN,
+        /** 200-element IN list */
+        WIDE_IN_LIST,
+        /** 50-row INSERT ... VALUES */
+        MULTI_ROW_INSERT;
+
+        String sql(int variant) {
+            return switch (this) {
+                case POINT_LOOKUP -> "SELECT id, name, email FROM users WHERE id = " + (1_000 + variant);
+                case COMPLEX_JOIN -> """
+                    SELECT u.name, p.title, COUNT(*) as cnt
+                    FROM users u
+                    JOIN profiles p ON u.id = p.user_id
+                    LEFT JOIN orders o ON u.id = o.customer_id
+                    WHERE u.age > %d AND p.status = 'active'
+                    AND o.created_date >= '2023-01-%02d'
+                    AND u.salary BETWEEN %d.0 AND 100000.0
+                    GROUP BY u.name, p.title
+                    HAVING COUNT(*) > 5
+                    """.formatted(18 + variant % 50, 1 + variant % 28, 40_000 + variant);
+                case WIDE_IN_LIST -> {
+                    var sql = new StringBuilder("SELECT id, total FROM orders WHERE status = 'open' AND customer_id IN (");
+                    for (int i = 0; i < 200; i++) {
+                        sql.append(i == 0 ? "" : ", ").append(variant * 200L + i);
+                    }
+                    yield sql.append(')').toString();
+                }
+                case MULTI_ROW_INSERT -> {
+                    var sql = new StringBuilder("INSERT INTO events (id, kind, payload, amount) VALUES ");
+                    for (int i = 0; i < 50; i++) {
+                        sql.append(i == 0 ? "" : ", ")
+                            .append('(').append(variant * 50L + i).append(", 'click', 'session-").append(variant)
+                            .append("', ").append(i).append(".25)");
+                    }
+                    yield sql.toString();
+                }
+            };
+        }
+    }
+
+    /**
+     * PreparedStatement that accepts every call and does nothing, so benchmarks measure the
+     * converter's side of binding and not a driver. Being a Proxy it boxes primitive arguments
+     * itself; that cost is the same for every variant under comparison.
+     */
+    static PreparedStatement noOpPreparedStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "NoOpPreparedStatement";
+                // Like drivers without server-side parameter descriptions
+                case "getParameterMetaData" -> throw new SQLFeatureNotSupportedException();
+                default -> defaultValue(method.getReturnType());
+            });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        return 0;
+    }
+}
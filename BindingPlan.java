@@ -0,0 +1,162 @@
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Parameter binding precompiled for one prepared SQL and one sequence of parameter types.
+ * <p>
+ * Each slot gets a binder specialized for its type when the plan is built, so binding is a
+ * straight walk over the binders with no per-value type dispatch. Nulls are bound with the
+ * SQL type the driver reports for that parameter, falling back to {@link Types#NULL} when the
+ * driver cannot describe its parameters; binding an untyped null makes some drivers re-prepare.
+ * <p>
+ * A template may be converted with different literal types (x = 1 and x = 'a' share
+ * "x = ?"), so a plan only applies to buffers whose types it {@link #matches(ParameterBuffer)}.
+ * <p>
+ * A plan built with target types from {@link ParameterTypeResolver} binds each literal as its
+ * target column's type where the literal converts exactly, e.g. '2023-01-01' as a DATE.
+ */
+@Slf4j
+public final class BindingPlan {
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement pstmt, int parameterIndex, ParameterBuffer params, int slot) throws SQLException;
+    }
+
+    private static final Binder LONG = (pstmt, index, params, slot) -> pstmt.setLong(index, params.longAt(slot));
+    private static final Binder DOUBLE = (pstmt, index, params, slot) -> pstmt.setDouble(index, params.doubleAt(slot));
+    private static final Binder STRING = (pstmt, index, params, slot) -> pstmt.setString(index, (String) params.objectAt(slot));
+    private static final Binder DATE = (pstmt, index, params, slot) -> pstmt.setDate(index, (java.sql.Date) params.objectAt(slot));
+    private static final Binder TIME = (pstmt, index, params, slot) -> pstmt.setTime(index, (java.sql.Time) params.objectAt(slot));
+    private static final Binder TIMESTAMP = (pstmt, index, params, slot) -> pstmt.setTimestamp(index, (java.sql.Timestamp) params.objectAt(slot));
+    private static final Binder ARRAY = (pstmt, index, params, slot) -> pstmt.setArray(index, ((ParameterBuffer.ArrayValue) params.objectAt(slot)).toSqlArray(pstmt));
+    private static final Binder OBJECT = (pstmt, index, params, slot) -> pstmt.setObject(index, params.objectAt(slot));
+    private static final Binder UNTYPED_NULL = (pstmt, index, params, slot) -> pstmt.setNull(index, Types.NULL);
+
+    private final byte[] types;
+    private final int[] targetTypes;
+    private final Binder[] binders;
+
+    private BindingPlan(byte[] types, int[] targetTypes, Binder[] binders) {
+        this.types = types;
+        this.targetTypes = targetTypes;
+        this.binders = binders;
+    }
+
+    /**
+     * Build the plan for the types of the given parameters. Parameter metadata is only requested
+     * from the statement when a parameter is null.
+     */
+    public static BindingPlan create(PreparedStatement pstmt, ParameterBuffer params) {
+        return create(pstmt, params, null);
+    }
+
+    /**
+     * Build the plan binding each parameter as its resolved target type; see
+     * {@link ParameterTypeResolver#resolve}. Null target types bind every parameter as its literal.
+     */
+    public static BindingPlan create(PreparedStatement pstmt, ParameterBuffer params, int[] targetTypes) {
+        var types = params.getTypes();
+        var binders = new Binder[types.length];
+        ParameterMetaData metaData = null;
+        var metaDataUnavailable = false;
+
+        for (int i = 0; i < types.length; i++) {
+            binders[i] = switch (types[i]) {
+                case ParameterBuffer.LONG -> LONG;
+                case ParameterBuffer.DOUBLE -> DOUBLE;
+                case ParameterBuffer.STRING -> STRING;
+                case ParameterBuffer.DATE -> DATE;
+                case ParameterBuffer.TIME -> TIME;
+                case ParameterBuffer.TIMESTAMP -> TIMESTAMP;
+                case ParameterBuffer.ARRAY -> ARRAY;
+                case ParameterBuffer.OBJECT -> OBJECT;
+                default -> null;
+            };
+            var target = targetTypes == null || i >= targetTypes.length ? ParameterTypeResolver.UNRESOLVED : targetTypes[i];
+            if (binders[i] != null) {
+                if (target != ParameterTypeResolver.UNRESOLVED && types[i] != ParameterBuffer.ARRAY
+                    && !ParameterTypeResolver.matches(types[i], target)) {
+                    binders[i] = coercing(binders[i], target);
+                }
+                continue;
+            }
+            if (target != ParameterTypeResolver.UNRESOLVED) {
+                binders[i] = typedNull(target);
+                continue;
+            }
+
+            // Null: bind with the parameter's declared type when the driver can tell us
+            var sqlType = Types.NULL;
+            if (!metaDataUnavailable) {
+                try {
+                    if (metaData == null) {
+                        metaData = pstmt.getParameterMetaData();
+                    }
+                    if (metaData == null) {
+                        metaDataUnavailable = true;
+                    } else {
+                        sqlType = metaData.getParameterType(i + 1);
+                    }
+                } catch (SQLException e) {
+                    log.debug("Parameter metadata unavailable, binding untyped nulls", e);
+                    metaDataUnavailable = true;
+                }
+            }
+            binders[i] = sqlType == Types.NULL ? UNTYPED_NULL : typedNull(sqlType);
+        }
+        return new BindingPlan(types, targetTypes, binders);
+    }
+
+    private static Binder typedNull(int sqlType) {
+        return (pstmt, index, params, slot) -> pstmt.setNull(index, sqlType);
+    }
+
+    // Values that do not convert, like 'abc' for a DATE, bind as they are and fail or convert in the database
+    private static Binder coercing(Binder literal, int sqlType) {
+        return (pstmt, index, params, slot) -> {
+            var value = ParameterTypeResolver.coerce(params.get(slot), sqlType);
+            if (value != null) {
+                pstmt.setObject(index, value, sqlType);
+            } else {
+                literal.bind(pstmt, index, params, slot);
+            }
+        };
+    }
+
+    /**
+     * Whether the parameters have exactly the types this plan was built for
+     */
+    public boolean matches(ParameterBuffer params) {
+        return params.hasTypes(types);
+    }
+
+    /**
+     * Whether the plan was also built for these target types, the very array the resolver returned
+     */
+    public boolean matches(ParameterBuffer params, int[] targetTypes) {
+        return this.targetTypes == targetTypes && params.hasTypes(types);
+    }
+
+    public int size() {
+        return binders.length;
+    }
+
+    /**
+     * Bind every parameter, starting at parameter 1
+     *
+     * @throws IllegalArgumentException when the parameter types do not match the plan
+     */
+    public void bind(PreparedStatement pstmt, ParameterBuffer params) throws SQLException {
+        if (!matches(params)) {
+            throw new IllegalArgumentException("Parameter types do not match the binding plan");
+        }
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(pstmt, i + 1, params, i);
+        }
+    }
+}
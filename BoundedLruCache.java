@@ -0,0 +1,185 @@
+import lombok.Value;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Size-bounded, concurrent LRU cache.
+ * Entries are spread over independently locked segments; each segment evicts its least
+ * recently used entries once it goes over its share of the entry or weight limit.
+ */
+public class BoundedLruCache<K, V> {
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+        long size;
+        long weight;
+
+        public double hitRate() {
+            var lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final int weight;
+
+        Node(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        final int maxEntries;
+        final long maxWeight;
+        long weight;
+
+        Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        void evictIfNeeded() {
+            var it = map.entrySet().iterator();
+            while ((map.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+                var eldest = it.next();
+                weight -= eldest.getValue().weight;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private final Segment[] segments;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of entries held across all segments
+     * @param maxWeight  maximum total weight held across all segments
+     * @param weigher    weight of a single entry, must be non-negative
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedLruCache(int maxEntries, long maxWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        this.weigher = weigher;
+        // Small caches use a single segment so the LRU order stays exact
+        var segmentCount = maxEntries >= 1024 ? 16 : 1;
+        this.segments = new BoundedLruCache.Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / segmentCount), Math.max(1, maxWeight / segmentCount));
+        }
+    }
+
+    private Segment segmentFor(Object key) {
+        var h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the cached value and marks it as most recently used, or null on a miss
+     */
+    public V get(K key) {
+        var segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            var node = segment.map.get(key);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return node.value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        var node = new Node<>(value, weigher.applyAsInt(key, value));
+        var segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            var previous = segment.map.put(key, node);
+            if (previous != null) {
+                segment.weight -= previous.weight;
+            }
+            segment.weight += node.weight;
+            segment.evictIfNeeded();
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public V remove(K key) {
+        var segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            var previous = segment.map.remove(key);
+            if (previous == null) {
+                return null;
+            }
+            segment.weight -= previous.weight;
+            return previous.value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (var segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+                segment.weight = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Visit every entry, least recently used first within each segment, without changing the LRU
+     * order; each segment is locked while it is visited, so the action must not use this cache
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (var segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.map.forEach((key, node) -> action.accept(key, node.value));
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public Stats stats() {
+        long size = 0;
+        long weight = 0;
+        for (var segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+                weight += segment.weight;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Instrumentation hooks of the converter, set with ConverterConfig.metrics.
+ * <p>
+ * Implementations are called on the conversion hot path from many threads, so they must be
+ * thread-safe and cheap. When {@link #isEnabled()} is false the converter does not even read
+ * the clock, which makes {@link #NOOP} free.
+ */
+public interface ConverterMetrics {
+
+    enum Stage {
+        /** Text injection checks, inline or on the async validator */
+        VALIDATION,
+        /** Lexer-mode scan */
+        LEX,
+        /** Literal scan of the template cache plus the cache lookup */
+        TEMPLATE_LOOKUP,
+        /** JSqlParser parse */
+        PARSE,
+        /** Deparse with literal extraction, including AST validation */
+        DEPARSE,
+        /** connection.prepareStatement or the statement cache */
+        PREPARE,
+        /** Setting the parameters */
+        BIND
+    }
+
+    ConverterMetrics NOOP = new ConverterMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    default void recordStage(Stage stage, long nanos) {
+    }
+
+    default void recordParseFailure() {
+    }
+
+    /**
+     * Called once per conversion served, cache hits included
+     */
+    default void recordConversion(int parameterCount, int warningCount) {
+    }
+}
@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class ConverterParityTest {
+
+    // Spelled the way the deparser prints SQL, since LEXER mode keeps the caller's spelling
+    private static final List<String> CORPUS = List.of(
+        "SELECT * FROM users WHERE name = 'O''Brien' AND status = 'active'",
+        "SELECT * FROM notes WHERE body = 'use -- or ; or /* freely'",
+        "SELECT * FROM accounts WHERE balance < -250 AND rate > -0.5",
+        "UPDATE accounts SET balance = balance - 10 WHERE id = 7",
+        "SELECT * FROM orders WHERE created >= DATE '2023-01-01' AND total > 100",
+        "SELECT * FROM events WHERE started < TIMESTAMP '2023-01-01 12:30:00' AND kind = 'login'",
+        "SELECT * FROM orders WHERE id IN (1, 2, 3) AND region NOT IN ('eu', 'us')",
+        "SELECT * FROM users WHERE id = 5 -- trailing comment",
+        "SELECT /* columns */ name FROM users WHERE id = 5",
+        "INSERT INTO users (id, name, email) VALUES (1, 'a', NULL)",
+        "DELETE FROM sessions WHERE expires < 1700000000 AND user_id = 42",
+        "SELECT * FROM users WHERE deleted_at IS NULL AND age >= 18 ORDER BY name");
+
+    @AfterEach
+    void restoreDefaults() {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder().build());
+    }
+
+    @Test
+    void lexerModeMatchesParserMode() throws Exception {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder()
+            .conversionMode(SqlToPreparedStatementConverter.ConversionMode.LEXER)
+            .build());
+        var dialect = SqlToPreparedStatementConverter.getConfig().getDialect();
+
+        for (var sql : CORPUS) {
+            // The lexer must handle the statement itself, not fall back to the parser
+            assertNotNull(SqlLiteralScanner.scan(sql, dialect, SqlLiteralScanner.Mode.LEXER), sql);
+            var lexed = SqlToPreparedStatementConverter.convertUncached(sql);
+            var parsed = SqlToPreparedStatementConverter.parseAndConvert(sql, SqlToPreparedStatementConverter.ValidationMode.TEXT);
+            assertEquals(parsed.getPreparedSql(), lexed.getPreparedSql(), sql);
+            assertEquals(parsed.getParameters(), lexed.getParameters(), sql);
+        }
+    }
+
+    @Test
+    void templatePathMatchesParser() throws Exception {
+        for (var sql : CORPUS) {
+            // The first conversion parses and learns the shape, the second one is served from it
+            SqlToPreparedStatementConverter.convertUncached(sql);
+            var templated = SqlToPreparedStatementConverter.convertUncached(sql);
+            var parsed = SqlToPreparedStatementConverter.parseAndConvert(sql, SqlToPreparedStatementConverter.ValidationMode.TEXT);
+            assertEquals(parsed.getPreparedSql(), templated.getPreparedSql(), sql);
+            assertEquals(parsed.getParameters(), templated.getParameters(), sql);
+            assertEquals(parsed.getWarnings(), templated.getWarnings(), sql);
+        }
+    }
+}
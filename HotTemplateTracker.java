@@ -0,0 +1,242 @@
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size heavy-hitters sketch of the templates (prepared SQL) the converter serves.
+ * <p>
+ * Uses the space-saving algorithm: at most {@code capacity} templates are tracked, and a template
+ * seen while the sketch is full replaces the least counted one, inheriting its count as an upper
+ * bound of the error. Any template seen more than {@code total / capacity} times is guaranteed to be
+ * tracked, so the top of the list is reliable however many distinct ad-hoc statements pass through.
+ * <p>
+ * Templates are spread over independently locked stripes, each with its own min-heap, so
+ * recording is O(log capacity) under a short lock and memory never grows past the capacity.
+ */
+public class HotTemplateTracker {
+
+    @Value
+    public static class HotTemplate {
+        String preparedSql;
+        /** Estimated conversions, never below the true count */
+        long count;
+        /** How much of count may belong to the templates this one replaced */
+        long maxOverestimate;
+        /** Conversions recorded since the template entered the sketch; time and parameters cover these */
+        long observed;
+        long totalNanos;
+        long totalParameters;
+
+        public double averageNanos() {
+            return observed == 0 ? 0.0 : (double) totalNanos / observed;
+        }
+
+        public double averageParameters() {
+            return observed == 0 ? 0.0 : (double) totalParameters / observed;
+        }
+    }
+
+    private static final class Entry {
+        String preparedSql;
+        long count;
+        long error;
+        long observed;
+        long totalNanos;
+        long totalParameters;
+        int heapIndex;
+
+        HotTemplate snapshot() {
+            return new HotTemplate(preparedSql, count, error, observed, totalNanos, totalParameters);
+        }
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final HashMap<String, Entry> entries;
+        // Min-heap on count; the root is the replacement candidate
+        final Entry[] heap;
+        int size;
+
+        Stripe(int capacity) {
+            entries = new HashMap<>(capacity * 4 / 3 + 1);
+            heap = new Entry[capacity];
+        }
+
+        void record(String preparedSql, long nanos, int parameterCount) {
+            lock.lock();
+            try {
+                var entry = entries.get(preparedSql);
+                if (entry == null) {
+                    entry = admit(preparedSql);
+                }
+                entry.count++;
+                entry.observed++;
+                entry.totalNanos += nanos;
+                entry.totalParameters += parameterCount;
+                siftDown(entry.heapIndex);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Entry admit(String preparedSql) {
+            Entry entry;
+            if (size < heap.length) {
+                // A new entry has the lowest count of all, so it rises from its leaf
+                entry = new Entry();
+                heap[size++] = entry;
+                siftUp(size - 1);
+            } else {
+                // Take over the least counted template; its count bounds how wrong ours can be
+                entry = heap[0];
+                entries.remove(entry.preparedSql);
+                entry.error = entry.count;
+                entry.observed = 0;
+                entry.totalNanos = 0;
+                entry.totalParameters = 0;
+            }
+            entry.preparedSql = preparedSql;
+            entries.put(preparedSql, entry);
+            return entry;
+        }
+
+        private void siftUp(int index) {
+            var entry = heap[index];
+            while (index > 0) {
+                var parent = (index - 1) / 2;
+                if (heap[parent].count <= entry.count) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                heap[index].heapIndex = index;
+                index = parent;
+            }
+            heap[index] = entry;
+            entry.heapIndex = index;
+        }
+
+        // Counts only grow, so an updated entry can only move towards the leaves
+        private void siftDown(int index) {
+            var entry = heap[index];
+            while (true) {
+                var child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                    child++;
+                }
+                if (heap[child].count >= entry.count) {
+                    break;
+                }
+                heap[index] = heap[child];
+                heap[index].heapIndex = index;
+                index = child;
+            }
+            heap[index] = entry;
+            entry.heapIndex = index;
+        }
+
+        void collect(List<HotTemplate> into) {
+            lock.lock();
+            try {
+                for (int i = 0; i < size; i++) {
+                    into.add(heap[i].snapshot());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+                Arrays.fill(heap, 0, size, null);
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final LongAdder recorded = new LongAdder();
+
+    /**
+     * @param capacity maximum number of templates tracked at once, across all stripes
+     */
+    public HotTemplateTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        // At least 64 slots per stripe, so each stripe's error bound stays close to the global one
+        var stripeCount = Math.min(16, Integer.highestOneBit(Math.max(1, capacity / 64)));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(Math.max(1, capacity / stripeCount));
+        }
+    }
+
+    /**
+     * Count one conversion of the template
+     */
+    public void record(String preparedSql, long nanos, int parameterCount) {
+        var hash = preparedSql.hashCode();
+        stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)].record(preparedSql, nanos, parameterCount);
+        recorded.increment();
+    }
+
+    /**
+     * Conversions recorded in total, tracked or not
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * The most converted templates, highest estimated count first
+     */
+    public List<HotTemplate> top(int limit) {
+        var all = new ArrayList<HotTemplate>();
+        for (var stripe : stripes) {
+            stripe.collect(all);
+        }
+        all.sort(Comparator.comparingLong(HotTemplate::getCount).reversed());
+        return List.copyOf(all.subList(0, Math.min(limit, all.size())));
+    }
+
+    public void clear() {
+        for (var stripe : stripes) {
+            stripe.clear();
+        }
+        recorded.reset();
+    }
+
+    public static void main(String[] args) {
+        // Zipf-like load: a few hot shapes buried in a million one-off statements
+        var tracker = new HotTemplateTracker(256);
+        var random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            String sql;
+            if (random.nextInt(10) < 3) {
+                sql = "SELECT * FROM hot_" + random.nextInt(5) + " WHERE id = ?";
+            } else {
+                sql = "SELECT * FROM adhoc WHERE c" + i + " = ?";
+            }
+            tracker.record(sql, 1_000 + random.nextInt(1_000), 1);
+        }
+        System.out.println("Recorded: " + tracker.getRecordedCount());
+        for (var hot : tracker.top(8)) {
+            System.out.printf("%8d (+/- %d) %6.0f ns %4.1f params  %s%n", hot.getCount(), hot.getMaxOverestimate(),
+                hot.averageNanos(), hot.averageParameters(), hot.getPreparedSql());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotTemplateTrackerTest {
+
+    @Test
+    void hotTemplateSurvivesManyDistinctStatements() {
+        var tracker = new HotTemplateTracker(64);
+        for (int i = 0; i < 1_000; i++) {
+            tracker.record("HOT", 1_000, 1);
+        }
+        for (int i = 0; i < 64; i++) {
+            tracker.record("adhoc" + i, 1_000, 1);
+        }
+
+        var top = tracker.top(3);
+        assertEquals("HOT", top.get(0).getPreparedSql());
+        assertEquals(1_000L, top.get(0).getCount());
+        assertEquals(0L, top.get(0).getMaxOverestimate());
+        assertTrue(top.get(1).getCount() <= 2, "ad-hoc statements only inherit ad-hoc counts");
+    }
+
+    @Test
+    void templatesAboveTheGuaranteedShareAreAlwaysTracked() {
+        var tracker = new HotTemplateTracker(256);
+        var hotCounts = new HashMap<String, Long>();
+        for (int i = 0; i < 200_000; i++) {
+            var sql = i % 10 < 3 ? "hot" + (i % 7) % 3 : "adhoc" + i;
+            if (sql.startsWith("hot")) {
+                hotCounts.merge(sql, 1L, Long::sum);
+            }
+            tracker.record(sql, 1_000, 1);
+        }
+
+        var top = tracker.top(3);
+        assertEquals(hotCounts.keySet(), top.stream().map(HotTemplateTracker.HotTemplate::getPreparedSql).collect(Collectors.toSet()));
+        for (var hot : top) {
+            var actual = hotCounts.get(hot.getPreparedSql());
+            assertTrue(hot.getCount() >= actual && hot.getCount() - hot.getMaxOverestimate() <= actual);
+        }
+        assertEquals(200_000L, tracker.getRecordedCount());
+    }
+}
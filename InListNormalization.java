@@ -0,0 +1,96 @@
+/**
+ * How IN lists of literals are parameterized.
+ * <p>
+ * Without normalization every list length is its own prepared SQL, and so its own template,
+ * binding plan, cached statement and database plan. Padding rounds the length up by repeating
+ * the last value, which matches exactly the same rows; the array form turns the whole list into
+ * one parameter.
+ */
+public enum InListNormalization {
+    /** One placeholder per value */
+    NONE,
+    /** Pad to the next power of two (then to a multiple of 1024), repeating the last value */
+    PAD_POWER_OF_TWO,
+    /**
+     * x = ANY(?) / x <> ALL(?) with one array parameter, on dialects that support it. Lists that
+     * mix value types, or hold only nulls, are padded instead. String values are sent as a varchar
+     * array, so lists compared with uuid, enum or other non-text columns should use padding.
+     */
+    ARRAY_PARAMETER;
+
+    private static final int LARGE_LIST = 1024;
+
+    /**
+     * The mode to apply for a dialect; the array form falls back to padding where arrays cannot be bound
+     */
+    public InListNormalization effectiveFor(SqlDialect dialect) {
+        return this == ARRAY_PARAMETER && !dialect.isArrayParameters() ? PAD_POWER_OF_TWO : this;
+    }
+
+    /**
+     * Number of placeholders a list of the given length is padded to
+     */
+    static int paddedSize(int length) {
+        if (length > LARGE_LIST) {
+            // Powers of two would overshoot driver parameter limits on very long lists
+            return (length + LARGE_LIST - 1) / LARGE_LIST * LARGE_LIST;
+        }
+        return length <= 1 ? length : Integer.highestOneBit(length - 1) << 1;
+    }
+
+    /**
+     * Rewrite the IN list whose values are the parameters from index first on, as extracted from
+     * the SQL, and return the text that replaces "IN (...)" or "NOT IN (...)"
+     */
+    String normalize(ParameterBuffer params, int first, boolean negated) {
+        var length = params.size() - first;
+        if (this == ARRAY_PARAMETER) {
+            var elementType = arrayElementType(params, first);
+            if (elementType != null) {
+                var elements = new Object[length];
+                for (int i = 0; i < length; i++) {
+                    elements[i] = params.get(first + i);
+                }
+                params.truncate(first);
+                params.addArray(new ParameterBuffer.ArrayValue(elementType, elements));
+                return negated ? "<> ALL (?)" : "= ANY (?)";
+            }
+        }
+
+        var padded = this == NONE ? length : paddedSize(length);
+        for (int i = length; i < padded; i++) {
+            params.addCopyOf(params.size() - 1);
+        }
+        return (negated ? "NOT IN (" : "IN (") + "?, ".repeat(padded - 1) + "?)";
+    }
+
+    /**
+     * Database type of an array holding the values, or null when they have no single type
+     */
+    private static String arrayElementType(ParameterBuffer params, int first) {
+        var type = ParameterBuffer.NULL;
+        for (int i = first; i < params.size(); i++) {
+            var slotType = params.getType(i);
+            if (slotType == ParameterBuffer.NULL || slotType == type) {
+                continue;
+            }
+            if (type == ParameterBuffer.NULL) {
+                type = slotType;
+            } else if ((type == ParameterBuffer.LONG || type == ParameterBuffer.DOUBLE)
+                    && (slotType == ParameterBuffer.LONG || slotType == ParameterBuffer.DOUBLE)) {
+                type = ParameterBuffer.DOUBLE;
+            } else {
+                return null;
+            }
+        }
+        return switch (type) {
+            case ParameterBuffer.LONG -> "bigint";
+            case ParameterBuffer.DOUBLE -> "float8";
+            case ParameterBuffer.STRING -> "varchar";
+            case ParameterBuffer.DATE -> "date";
+            case ParameterBuffer.TIME -> "time";
+            case ParameterBuffer.TIMESTAMP -> "timestamp";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,168 @@
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ConverterMetrics} kept in memory: a log-linear histogram per stage, a parameter-count
+ * histogram and plain counters, exported with {@link #snapshot()}.
+ * <p>
+ * Recording is a few uncontended atomic increments, with no locks or allocation.
+ */
+public class InMemoryConverterMetrics implements ConverterMetrics {
+
+    @Value
+    public static class HistogramSnapshot {
+        long count;
+        long sum;
+        long max;
+        long p50;
+        long p90;
+        long p99;
+        long p999;
+
+        public double mean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+    }
+
+    @Value
+    public static class Snapshot {
+        /** Latency of each stage in nanoseconds */
+        Map<Stage, HistogramSnapshot> stageNanos;
+        HistogramSnapshot parameterCounts;
+        long conversions;
+        long conversionsWithWarnings;
+        long warnings;
+        long parseFailures;
+        /** Cache counters of the converter; null for caches that are disabled */
+        BoundedLruCache.Stats conversionCache;
+        BoundedLruCache.Stats templateCache;
+        BoundedLruCache.Stats bindingPlanCache;
+        PreparedStatementCache.Stats statementCache;
+    }
+
+    /**
+     * Log-linear histogram with 8 sub-buckets per power of two; values below 8 are exact,
+     * larger ones are reported with at most 12.5% error
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            var exponent = 63 - Long.numberOfLeadingZeros(value);
+            var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Largest value that falls into the bucket
+         */
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            var subBucket = bucket % SUB_BUCKETS;
+            // Wraps to Long.MAX_VALUE for the very last bucket, which is the right bound
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        HistogramSnapshot snapshot() {
+            var counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            var maxValue = max.get();
+            return new HistogramSnapshot(total, sum.sum(), maxValue,
+                percentile(counts, total, 0.50, maxValue), percentile(counts, total, 0.90, maxValue),
+                percentile(counts, total, 0.99, maxValue), percentile(counts, total, 0.999, maxValue));
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+            if (total == 0) {
+                return 0;
+            }
+            var rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxValue);
+                }
+            }
+            return maxValue;
+        }
+    }
+
+    private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+    private final Histogram parameterCounts = new Histogram();
+    private final LongAdder conversions = new LongAdder();
+    private final LongAdder conversionsWithWarnings = new LongAdder();
+    private final LongAdder warnings = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+
+    public InMemoryConverterMetrics() {
+        // Filled once up front, so concurrent reads of the map never see it change
+        for (var stage : Stage.values()) {
+            stages.put(stage, new Histogram());
+        }
+    }
+
+    @Override
+    public void recordStage(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    @Override
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    @Override
+    public void recordConversion(int parameterCount, int warningCount) {
+        conversions.increment();
+        parameterCounts.record(parameterCount);
+        if (warningCount > 0) {
+            conversionsWithWarnings.increment();
+            warnings.add(warningCount);
+        }
+    }
+
+    /**
+     * Current values of every metric together with the converter's cache counters
+     */
+    public Snapshot snapshot() {
+        var stageNanos = new EnumMap<Stage, HistogramSnapshot>(Stage.class);
+        stages.forEach((stage, histogram) -> stageNanos.put(stage, histogram.snapshot()));
+        return new Snapshot(Collections.unmodifiableMap(stageNanos), parameterCounts.snapshot(),
+            conversions.sum(), conversionsWithWarnings.sum(), warnings.sum(), parseFailures.sum(),
+            SqlToPreparedStatementConverter.getCacheStats(),
+            SqlToPreparedStatementConverter.getTemplateCacheStats(),
+            SqlToPreparedStatementConverter.getBindingPlanCacheStats(),
+            SqlToPreparedStatementConverter.getStatementCacheStats());
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InjectionPatternScannerTest {
+
+    // The pattern lists of prepared3.java and of the older variants
+    private static final List<String> FIND_PATTERNS = Arrays.asList(
+        "union.*select", "';.*--", "';.*(drop|delete|insert|update)", "benchmark\\s*\\(", "sleep\\s*\\(",
+        "waitfor\\s+delay", "xp_cmdshell", "sp_executesql", "exec(ute)?\\s*\\(", "load_file\\s*\\(",
+        "into\\s+outfile", "information_schema", "pg_sleep\\s*\\(", "dbms_pipe\\.receive_message");
+
+    private static final List<String> WHOLE_INPUT_PATTERNS = Arrays.asList(
+        "union.*select", "';.*--", "';.*drop", "';.*delete", "';.*insert", "';.*update", "benchmark\\s*\\(",
+        "sleep\\s*\\(", "waitfor\\s+delay", "xp_cmdshell", "sp_executesql", "exec\\s*\\(", "execute\\s*\\(",
+        "load_file\\s*\\(", "into\\s+outfile", "information_schema", "pg_sleep\\s*\\(", "dbms_pipe.receive_message");
+
+    // Pieces of the patterns and the characters their classes treat specially, so random
+    // concatenations produce near misses, line breaks inside matches and several hits at once
+    private static final String[] FRAGMENTS = {
+        "union", "UNION", "select", "Select", "';", "--", "-", "drop", "delete", "insert", "update", "benchmark",
+        "sleep", "pg_", "waitfor", "delay", "xp_cmdshell", "sp_executesql", "exec", "ute", "load_file", "into",
+        "outfile", "information_schema", "dbms_pipe", ".", "receive_message", "x", "(", ")", " ", "  ", "\t", "\n",
+        "\r", "\u000B", "\f", "\u0085", "\u2028", "\u00e9", ";", "#", "/*", "'"
+    };
+
+    @Test
+    void findModeMatchesRegexFind() {
+        var scanner = InjectionPatternScanner.compile(FIND_PATTERNS);
+        var regexes = new ArrayList<Pattern>();
+        for (var pattern : FIND_PATTERNS) {
+            regexes.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+        }
+        var random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            var sql = randomSql(random);
+            var expected = new ArrayList<String>();
+            for (int p = 0; p < regexes.size(); p++) {
+                if (regexes.get(p).matcher(sql).find()) {
+                    expected.add(FIND_PATTERNS.get(p));
+                }
+            }
+            assertEquals(expected, scanner.scan(sql).getMatchedPatterns(), describe(sql));
+        }
+    }
+
+    @Test
+    void wholeInputModeMatchesRegexMatches() {
+        var scanner = InjectionPatternScanner.compileWholeInput(WHOLE_INPUT_PATTERNS);
+        var regexes = new ArrayList<Pattern>();
+        for (var pattern : WHOLE_INPUT_PATTERNS) {
+            regexes.add(Pattern.compile(".*" + pattern + ".*"));
+        }
+        var random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            // The older variants scan the SQL as given, where they used to match its lower-case copy
+            var sql = randomSql(random);
+            var expected = new ArrayList<String>();
+            for (int p = 0; p < regexes.size(); p++) {
+                if (regexes.get(p).matcher(sql.toLowerCase(Locale.ROOT)).matches()) {
+                    expected.add(WHOLE_INPUT_PATTERNS.get(p));
+                }
+            }
+            assertEquals(expected, scanner.scan(sql).getMatchedPatterns(), describe(sql));
+        }
+    }
+
+    @Test
+    void wholeInputMatchDoesNotLeakIntoTheNextPattern() {
+        var scanner = InjectionPatternScanner.compileWholeInput(WHOLE_INPUT_PATTERNS);
+        assertEquals(List.of("waitfor\\s+delay"), scanner.scan("waitfor\ndelay xp_cmdshell").getMatchedPatterns());
+        assertEquals(List.of("exec\\s*\\("), scanner.scan("exec\n(x) execute (y)").getMatchedPatterns());
+        assertEquals(List.of("into\\s+outfile"), scanner.scan("into\noutfile information_schema").getMatchedPatterns());
+        assertEquals(List.of("benchmark\\s*\\("), scanner.scan("benchmark\n(1) sleep (2)").getMatchedPatterns());
+    }
+
+    @Test
+    void countsSemicolonsAndCommentMarkers() {
+        var scan = InjectionPatternScanner.compile(FIND_PATTERNS).scan("SELECT 1; SELECT 2; -- done");
+        assertEquals(2, scan.getSemicolons());
+        assertEquals(true, scan.hasComments());
+        assertEquals(false, InjectionPatternScanner.compile(FIND_PATTERNS).scan("SELECT a - b").hasComments());
+    }
+
+    @Test
+    void rejectsSyntaxOutsideTheSubset() {
+        assertThrows(IllegalArgumentException.class, () -> InjectionPatternScanner.compile(List.of("a[bc]")));
+        assertThrows(IllegalArgumentException.class, () -> InjectionPatternScanner.compile(List.of("a*")));
+    }
+
+    private static String randomSql(Random random) {
+        var sql = new StringBuilder();
+        var pieces = 1 + random.nextInt(12);
+        for (int i = 0; i < pieces; i++) {
+            sql.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return sql.toString();
+    }
+
+    private static String describe(String sql) {
+        return "for " + sql.replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,145 @@
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Which literals the converter keeps in the SQL instead of turning them into parameters.
+ * <p>
+ * A parameter lets one plan serve every value, but some literals are worth more to the planner as
+ * constants: row limits, positional ORDER BY and GROUP BY references (which stop naming a column
+ * once they are a parameter), flags it folds and partition keys it prunes on. Literals are kept by
+ * clause, when compared with a column whose name matches a pattern, or when equality comparisons
+ * show the column takes only a few distinct values.
+ * <p>
+ * Kept literals are part of the prepared SQL, so every distinct kept value costs a template and a
+ * plan; keep the rules to columns with few values.
+ */
+@Value
+@Builder(toBuilder = true)
+public class LiteralInliningPolicy {
+
+    public static final LiteralInliningPolicy NONE = builder().build();
+
+    public enum Clause {
+        /** Row count of LIMIT, TOP and FETCH FIRST */
+        LIMIT,
+        /** OFFSET, and the offset of LIMIT offset, count */
+        OFFSET,
+        /** Literal ORDER BY items, such as the positional ORDER BY 1 */
+        ORDER_BY,
+        /** Literal GROUP BY items, such as the positional GROUP BY 1 */
+        GROUP_BY
+    }
+
+    /**
+     * What the cardinality hints say about a column's values
+     */
+    public enum Verdict {
+        /** Few distinct values seen over the whole sample: keep them inline */
+        INLINE,
+        /** Too many distinct values, or the column is not tracked */
+        PARAMETERIZE,
+        /** Still sampling; parameterized for now, and the conversion must not be cached */
+        PENDING
+    }
+
+    /** Clauses of SELECTs whose literals are kept */
+    @Builder.Default
+    Set<Clause> clauses = Set.of();
+    /** Literals compared with a column whose unqualified, unquoted name matches are kept; null matches no column */
+    @Builder.Default
+    Pattern inlineColumns = null;
+    /** Keep equality literals of columns seen with at most this many distinct values; 0 disables cardinality hints */
+    @Builder.Default
+    int maxInlineCardinality = 0;
+    /** Equality comparisons seen per column before its distinct values are trusted */
+    @Builder.Default
+    int cardinalitySampleSize = 1_000;
+    /** Columns whose values are sampled; further columns stay parameterized */
+    @Builder.Default
+    int maxTrackedColumns = 1_024;
+
+    public boolean isActive() {
+        return !clauses.isEmpty() || inlineColumns != null || maxInlineCardinality > 0;
+    }
+
+    public boolean inlines(Clause clause) {
+        return clauses.contains(clause);
+    }
+
+    public boolean isInlineColumn(String columnName) {
+        return inlineColumns != null && inlineColumns.matcher(columnName).matches();
+    }
+
+    /**
+     * Distinct values seen per column in equality comparisons, learned from the statements the
+     * converter parses. Each column holds at most maxInlineCardinality + 1 values: a column that
+     * goes past them is high-cardinality for good, one that stays within them for
+     * cardinalitySampleSize comparisons is low-cardinality until it goes past them.
+     */
+    public static final class CardinalityHints {
+
+        private static final class ColumnValues {
+            final Set<String> values = new HashSet<>();
+            long observations;
+            boolean high;
+        }
+
+        private final int maxCardinality;
+        private final int sampleSize;
+        private final int maxColumns;
+        private final ConcurrentHashMap<String, ColumnValues> columns = new ConcurrentHashMap<>();
+
+        public CardinalityHints(LiteralInliningPolicy policy) {
+            this.maxCardinality = policy.getMaxInlineCardinality();
+            this.sampleSize = policy.getCardinalitySampleSize();
+            this.maxColumns = policy.getMaxTrackedColumns();
+        }
+
+        /**
+         * Count one comparison of the column with the value, as literal text
+         */
+        public Verdict observe(String column, String value) {
+            var key = column.toLowerCase(Locale.ROOT);
+            var values = columns.get(key);
+            if (values == null) {
+                if (columns.size() >= maxColumns) {
+                    return Verdict.PARAMETERIZE;
+                }
+                values = columns.computeIfAbsent(key, k -> new ColumnValues());
+            }
+            synchronized (values) {
+                if (values.high) {
+                    return Verdict.PARAMETERIZE;
+                }
+                if (values.values.add(value) && values.values.size() > maxCardinality) {
+                    values.high = true;
+                    values.values.clear();
+                    return Verdict.PARAMETERIZE;
+                }
+                return ++values.observations >= sampleSize ? Verdict.INLINE : Verdict.PENDING;
+            }
+        }
+
+        /**
+         * Columns whose values are currently kept inline, lower case
+         */
+        public Set<String> lowCardinalityColumns() {
+            var low = new TreeSet<String>();
+            columns.forEach((column, values) -> {
+                synchronized (values) {
+                    if (!values.high && values.observations >= sampleSize) {
+                        low.add(column);
+                    }
+                }
+            });
+            return low;
+        }
+    }
+}
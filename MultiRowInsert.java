@@ -0,0 +1,299 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A multi-row {@code INSERT ... VALUES (...), (...), ...} split into a fixed-size row template and
+ * its rows, so it can run as a batch of small statements instead of one statement with a
+ * parameter per value.
+ * <p>
+ * Only plain inserts are split: every value must be a string, signed number or NULL literal, every
+ * row must have the same number of values and nothing may follow the rows (ON CONFLICT,
+ * RETURNING, ...). Typed literals like DATE '..' are not split, since the converter keeps them
+ * inline. Like the converter, a sign stays in the statement text and only the unsigned number is
+ * bound, so every row must put its signs on the same values for the rows to share one template.
+ * Callers still check the first statement against the converter, see
+ * {@link SqlBatchExecutor#executeInsert}.
+ * Rows are validated once up front, then read again from the SQL text as statements are bound,
+ * so only the rows of the batch being sent are ever held as parameters.
+ */
+public final class MultiRowInsert {
+
+    private final String sql;
+    private final SqlDialect dialect;
+    /** Statement text up to and including VALUES */
+    private final String head;
+    private final int firstRow;
+    private final int columnCount;
+    private final int rowCount;
+
+    private MultiRowInsert(String sql, SqlDialect dialect, String head, int firstRow, int columnCount, int rowCount) {
+        this.sql = sql;
+        this.dialect = dialect;
+        this.head = head;
+        this.firstRow = firstRow;
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Split the statement, or return null when it is not a plain INSERT with at least two rows of literals
+     */
+    public static MultiRowInsert parse(String sql, SqlDialect dialect) {
+        var start = skipIgnored(sql, 0, dialect);
+        if (start < 0 || !startsWithWord(sql, start, "INSERT")) {
+            return null;
+        }
+        var valuesEnd = endOfHead(sql, start + "INSERT".length(), dialect);
+        if (valuesEnd < 0) {
+            return null;
+        }
+
+        // Validate every row before anything runs, reusing one buffer
+        var scratch = new ParameterBuffer();
+        var signs = new StringBuilder();
+        String firstSigns = null;
+        var columnCount = -1;
+        var rowCount = 0;
+        var i = valuesEnd;
+        while (true) {
+            i = readRow(sql, skipIgnored(sql, i, dialect), dialect, scratch, signs);
+            if (i < 0 || (firstSigns != null && !firstSigns.contentEquals(signs))) {
+                return null;
+            }
+            if (firstSigns == null) {
+                firstSigns = signs.toString();
+            }
+            columnCount = scratch.size();
+            scratch.truncate(0);
+            signs.setLength(0);
+            rowCount++;
+
+            i = skipIgnored(sql, i, dialect);
+            if (i < 0) {
+                return null;
+            }
+            if (i < sql.length() && sql.charAt(i) == ',') {
+                i++;
+                continue;
+            }
+            if (i < sql.length() && sql.charAt(i) == ';') {
+                i = skipIgnored(sql, i + 1, dialect);
+            }
+            if (i != sql.length()) {
+                return null;
+            }
+            break;
+        }
+        if (rowCount < 2) {
+            return null;
+        }
+        return new MultiRowInsert(sql, dialect, sql.substring(start, valuesEnd), valuesEnd, columnCount, rowCount);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * The whole statement, as given
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The statement's text with only its first rows, e.g. to convert one statement of the split
+     */
+    public String statement(int rows) {
+        if (rows <= 0 || rows > rowCount) {
+            throw new IllegalArgumentException("Cannot take " + rows + " of " + rowCount + " rows");
+        }
+        var position = firstRow;
+        var scratch = new ParameterBuffer(columnCount);
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                // Skip the comma after the previous row; validated in parse()
+                position = skipIgnored(sql, position, dialect) + 1;
+            }
+            position = readRow(sql, skipIgnored(sql, position, dialect), dialect, scratch, null);
+            scratch.truncate(0);
+        }
+        return head + sql.substring(firstRow, position);
+    }
+
+    /**
+     * Parameters of one statement per rowsPerStatement rows, read from the SQL text as the
+     * iterator advances; the last one holds the remaining rows and may be shorter
+     */
+    public Iterator<ParameterBuffer> statements(int rowsPerStatement) {
+        if (rowsPerStatement <= 0) {
+            throw new IllegalArgumentException("rowsPerStatement must be positive");
+        }
+        return new Iterator<>() {
+            private int position = firstRow;
+            private int rowsLeft = rowCount;
+
+            @Override
+            public boolean hasNext() {
+                return rowsLeft > 0;
+            }
+
+            @Override
+            public ParameterBuffer next() {
+                if (rowsLeft == 0) {
+                    throw new NoSuchElementException();
+                }
+                var rows = Math.min(rowsPerStatement, rowsLeft);
+                var params = new ParameterBuffer(rows * columnCount);
+                for (int r = 0; r < rows; r++) {
+                    position = readRow(sql, skipIgnored(sql, position, dialect), dialect, params, null);
+                    // Skip the comma after the row; validated in parse()
+                    position = skipIgnored(sql, position, dialect) + 1;
+                }
+                rowsLeft -= rows;
+                return params.freeze();
+            }
+        };
+    }
+
+    /**
+     * Index after the VALUES keyword, or -1 unless everything before it is names, quoted names and punctuation
+     */
+    private static int endOfHead(String sql, int i, SqlDialect dialect) {
+        while (true) {
+            i = skipIgnored(sql, i, dialect);
+            if (i < 0 || i == sql.length()) {
+                return -1;
+            }
+            var c = sql.charAt(i);
+            if (SqlLiteralScanner.isIdentifierStart(c)) {
+                var start = i;
+                while (i < sql.length() && (SqlLiteralScanner.isIdentifierPart(sql.charAt(i)) || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                if (i - start == 6 && sql.regionMatches(true, start, "VALUES", 0, 6)) {
+                    return i;
+                }
+            } else if (c == '"' || (c == '`' && dialect.isBacktickIdentifiers()) || (c == '[' && dialect.isBracketIdentifiers())) {
+                var end = SqlLiteralScanner.endOfQuoted(sql, i, c == '[' ? ']' : c);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 1;
+            } else if (c == '.' || c == ',' || c == '(' || c == ')') {
+                i++;
+            } else {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Read one parenthesized row of literals into params, and the sign of each value into signs
+     * unless it is null; returns the index after it, or -1
+     */
+    private static int readRow(String sql, int i, SqlDialect dialect, ParameterBuffer params, StringBuilder signs) {
+        if (i < 0 || i >= sql.length() || sql.charAt(i) != '(') {
+            return -1;
+        }
+        i++;
+        while (true) {
+            i = readValue(sql, skipIgnored(sql, i, dialect), dialect, params, signs);
+            i = skipIgnored(sql, i, dialect);
+            if (i < 0 || i >= sql.length()) {
+                return -1;
+            }
+            var c = sql.charAt(i++);
+            if (c == ')') {
+                return i;
+            }
+            if (c != ',') {
+                return -1;
+            }
+        }
+    }
+
+    private static int readValue(String sql, int i, SqlDialect dialect, ParameterBuffer params, StringBuilder signs) {
+        if (i < 0 || i >= sql.length()) {
+            return -1;
+        }
+        var c = sql.charAt(i);
+        var sign = c == '-' || c == '+' ? c : ' ';
+        if (signs != null) {
+            signs.append(sign);
+        }
+        if (c == '\'') {
+            var end = SqlLiteralScanner.endOfString(sql, i, dialect);
+            if (end < 0) {
+                return -1;
+            }
+            // Raw content, escapes included, like the converter's string parameters
+            params.addString(sql.substring(i + 1, end));
+            return end + 1;
+        }
+
+        var numberStart = sign == ' ' ? i : i + 1;
+        if (numberStart < sql.length() && (SqlLiteralScanner.isDigit(sql.charAt(numberStart))
+                || (sql.charAt(numberStart) == '.' && numberStart + 1 < sql.length() && SqlLiteralScanner.isDigit(sql.charAt(numberStart + 1))))) {
+            var end = SqlLiteralScanner.endOfNumber(sql, numberStart);
+            // The sign stays in the statement text, as with the converter's -? placeholders
+            if (end < 0 || !SqlLiteralScanner.addNumber(sql.substring(numberStart, end), params)) {
+                return -1;
+            }
+            return end;
+        }
+
+        if (SqlLiteralScanner.isIdentifierStart(c)) {
+            var end = i;
+            while (end < sql.length() && SqlLiteralScanner.isIdentifierPart(sql.charAt(end))) {
+                end++;
+            }
+            if (sql.regionMatches(true, i, "NULL", 0, 4) && end - i == 4) {
+                params.addNull();
+                return end;
+            }
+        }
+        // Expressions, DEFAULT, function calls, typed literals the converter keeps inline: not a literal row
+        return -1;
+    }
+
+    /**
+     * Skip whitespace and comments; -1 on an unterminated block comment
+     */
+    private static int skipIgnored(String sql, int i, SqlDialect dialect) {
+        if (i < 0) {
+            return -1;
+        }
+        var length = sql.length();
+        while (i < length) {
+            var c = sql.charAt(i);
+            var next = i + 1 < length ? sql.charAt(i + 1) : '\0';
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if ((c == '-' && next == '-') || (c == '#' && dialect.isHashComments())) {
+                while (i < length && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') {
+                    i++;
+                }
+            } else if (c == '/' && next == '*') {
+                var end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean startsWithWord(String sql, int i, String word) {
+        var end = i + word.length();
+        return sql.regionMatches(true, i, word, 0, word.length())
+            && (end == sql.length() || !SqlLiteralScanner.isIdentifierPart(sql.charAt(end)));
+    }
+}
@@ -0,0 +1,28 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MultiRowInsertTest {
+
+    @Test
+    void signsStayInTheTextAndTheUnsignedValueIsBound() {
+        var insert = MultiRowInsert.parse("INSERT INTO t (id, delta) VALUES (1, -5), (2, -0.5), (3, -7)", SqlDialect.ANSI);
+        assertNotNull(insert);
+
+        assertEquals("INSERT INTO t (id, delta) VALUES (1, -5), (2, -0.5)", insert.statement(2));
+        var statements = insert.statements(2);
+        assertEquals(ParameterBuffer.of(List.of(1L, 5L, 2L, 0.5)), statements.next());
+        assertEquals(ParameterBuffer.of(List.of(3L, 7L)), statements.next());
+    }
+
+    @Test
+    void rowsSigningDifferentValuesAreNotSplit() {
+        // One template cannot hold both -? and ? in the same place
+        assertNull(MultiRowInsert.parse("INSERT INTO t (id, delta) VALUES (1, -5), (2, 5)", SqlDialect.ANSI));
+        assertNull(MultiRowInsert.parse("INSERT INTO t (id, name) VALUES (1, 'a'), (2, 'b', 3)", SqlDialect.ANSI));
+    }
+}
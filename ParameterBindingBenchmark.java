@@ -0,0 +1,156 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting and binding parameters: boxed List&lt;Object&gt; with the old per-value setter switch,
+ * {@link ParameterBuffer#bindTo}, and a precompiled {@link BindingPlan}. Slots cycle through
+ * long, double, string and null.
+ * <p>
+ * Needs org.openjdk.jmh:jmh-core and jmh-generator-annprocess. Run main(), which adds the GC
+ * profiler; compare gc.alloc.rate.norm (bytes per operation) between the benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterBindingBenchmark {
+
+    @Param({ "4", "32" })
+    int parameterCount;
+
+    // Literal values as the deparser reads them; above 127 so Long.valueOf cannot use its cache
+    private long[] longs;
+    private double[] doubles;
+    private String[] strings;
+    private ParameterBuffer cachedBuffer;
+    private BindingPlan plan;
+    private PreparedStatement statement;
+
+    @Setup
+    public void setUp() {
+        longs = new long[parameterCount];
+        doubles = new double[parameterCount];
+        strings = new String[parameterCount];
+        for (int i = 0; i < parameterCount; i++) {
+            longs[i] = 1_000 + i;
+            doubles[i] = 1_000.5 + i;
+            strings[i] = "value" + i;
+        }
+        cachedBuffer = fillBuffer();
+        statement = BenchmarkSupport.noOpPreparedStatement();
+        plan = BindingPlan.create(statement, cachedBuffer);
+    }
+
+    /**
+     * The previous path: every literal boxed into a List, unboxed again by the setter switch
+     */
+    @Benchmark
+    public void boxedList() throws SQLException {
+        var params = new ArrayList<Object>(parameterCount);
+        for (int i = 0; i < parameterCount; i++) {
+            params.add(switch (i % 4) {
+                case 0 -> (Object) longs[i];
+                case 1 -> (Object) doubles[i];
+                case 2 -> strings[i];
+                default -> null;
+            });
+        }
+        for (int i = 0; i < params.size(); i++) {
+            setParameter(statement, i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Binding a cached List with the old setter, as on every cache hit before the typed buffer
+     */
+    @Benchmark
+    public void setParameterSwitch() throws SQLException {
+        var params = cachedBuffer.asList();
+        for (int i = 0; i < params.size(); i++) {
+            setParameter(statement, i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Conversion followed by binding, as on a cache miss
+     */
+    @Benchmark
+    public void parameterBuffer() throws SQLException {
+        fillBuffer().bindTo(statement);
+    }
+
+    /**
+     * Binding a cached result's buffer, as on every cache hit
+     */
+    @Benchmark
+    public void cachedParameterBuffer() throws SQLException {
+        cachedBuffer.bindTo(statement);
+    }
+
+    /**
+     * Binding a cached result's buffer through the template's plan
+     */
+    @Benchmark
+    public void bindingPlan() throws SQLException {
+        plan.bind(statement, cachedBuffer);
+    }
+
+    private ParameterBuffer fillBuffer() {
+        var buffer = new ParameterBuffer(parameterCount);
+        for (int i = 0; i < parameterCount; i++) {
+            switch (i % 4) {
+                case 0 -> buffer.addLong(longs[i]);
+                case 1 -> buffer.addDouble(doubles[i]);
+                case 2 -> buffer.addString(strings[i]);
+                default -> buffer.addNull();
+            }
+        }
+        return buffer.freeze();
+    }
+
+    /**
+     * The converter's setter before typed buffers and binding plans
+     */
+    private static void setParameter(PreparedStatement pstmt, int index, Object value) throws SQLException {
+        switch (value) {
+            case null -> pstmt.setNull(index, java.sql.Types.NULL);
+            case String s -> pstmt.setString(index, s);
+            case Integer i -> pstmt.setInt(index, i);
+            case Long l -> pstmt.setLong(index, l);
+            case Double d -> pstmt.setDouble(index, d);
+            case java.sql.Date date -> pstmt.setDate(index, date);
+            case java.sql.Time time -> pstmt.setTime(index, time);
+            case java.sql.Timestamp ts -> pstmt.setTimestamp(index, ts);
+            case Boolean b -> pstmt.setBoolean(index, b);
+            default -> pstmt.setObject(index, value);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder()
+            .include(ParameterBindingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,413 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Statement parameters stored by type: long and double values stay unboxed in a primitive
+ * array, everything else sits in a reference array, and every slot carries a type tag.
+ * <p>
+ * The converter fills a buffer once and freezes it; frozen buffers are shared through the
+ * caches and bound any number of times with {@link #bindTo(PreparedStatement)}, which does
+ * not allocate. {@link #asList()} is the boxed view for code that wants a List.
+ */
+public final class ParameterBuffer {
+
+    public static final byte NULL = 0;
+    public static final byte LONG = 1;
+    public static final byte DOUBLE = 2;
+    public static final byte STRING = 3;
+    public static final byte DATE = 4;
+    public static final byte TIME = 5;
+    public static final byte TIMESTAMP = 6;
+    /** Any other value, bound with setObject */
+    public static final byte OBJECT = 7;
+    /** {@link ArrayValue}, bound with setArray */
+    public static final byte ARRAY = 8;
+
+    public static final ParameterBuffer EMPTY = new ParameterBuffer(0).freeze();
+
+    /**
+     * SQL array parameter; the array itself is created from the statement's connection at bind time
+     */
+    public static final class ArrayValue {
+        private final String elementType;
+        private final Object[] elements;
+
+        /**
+         * @param elementType database type name of the elements, as passed to Connection.createArrayOf
+         */
+        public ArrayValue(String elementType, Object[] elements) {
+            this.elementType = Objects.requireNonNull(elementType);
+            this.elements = elements.clone();
+        }
+
+        public String getElementType() {
+            return elementType;
+        }
+
+        public List<Object> getElements() {
+            return Collections.unmodifiableList(Arrays.asList(elements));
+        }
+
+        java.sql.Array toSqlArray(PreparedStatement pstmt) throws SQLException {
+            return pstmt.getConnection().createArrayOf(elementType, elements.clone());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayValue other && elementType.equals(other.elementType) && Arrays.equals(elements, other.elements);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * elementType.hashCode() + Arrays.hashCode(elements);
+        }
+
+        @Override
+        public String toString() {
+            return elementType + Arrays.toString(elements);
+        }
+    }
+
+    private byte[] tags;
+    // Long values, and double values as raw bits; allocated with the first numeric value
+    private long[] primitives;
+    // Reference values; allocated with the first non-numeric value
+    private Object[] objects;
+    private int size;
+    private boolean frozen;
+    private List<Object> listView;
+
+    public ParameterBuffer() {
+        this(8);
+    }
+
+    public ParameterBuffer(int initialCapacity) {
+        tags = new byte[initialCapacity];
+    }
+
+    /**
+     * Frozen buffer holding the given values, with Long and Double unboxed
+     */
+    public static ParameterBuffer of(List<?> values) {
+        var buffer = new ParameterBuffer(values.size());
+        for (var value : values) {
+            buffer.add(value);
+        }
+        return buffer.freeze();
+    }
+
+    public ParameterBuffer addLong(long value) {
+        var slot = nextSlot();
+        tags[slot] = LONG;
+        primitives()[slot] = value;
+        return this;
+    }
+
+    public ParameterBuffer addDouble(double value) {
+        var slot = nextSlot();
+        tags[slot] = DOUBLE;
+        primitives()[slot] = Double.doubleToRawLongBits(value);
+        return this;
+    }
+
+    public ParameterBuffer addString(String value) {
+        return value == null ? addNull() : addReference(STRING, value);
+    }
+
+    public ParameterBuffer addNull() {
+        tags[nextSlot()] = NULL;
+        return this;
+    }
+
+    public ParameterBuffer addArray(ArrayValue value) {
+        return value == null ? addNull() : addReference(ARRAY, value);
+    }
+
+    /**
+     * Append another copy of an existing slot, keeping its type and without boxing
+     */
+    public ParameterBuffer addCopyOf(int index) {
+        Objects.checkIndex(index, size);
+        var tag = tags[index];
+        return switch (tag) {
+            case NULL -> addNull();
+            case LONG -> addLong(primitives[index]);
+            case DOUBLE -> addDouble(doubleAt(index));
+            default -> addReference(tag, objects[index]);
+        };
+    }
+
+    /**
+     * Drop every slot from newSize on, for rewriting values that were just added
+     */
+    void truncate(int newSize) {
+        if (frozen) {
+            throw new IllegalStateException("ParameterBuffer is frozen");
+        }
+        Objects.checkIndex(newSize, size + 1);
+        if (objects != null) {
+            Arrays.fill(objects, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Add a value of any type; Long and Double are unboxed, types without a dedicated tag are bound with setObject
+     */
+    public ParameterBuffer add(Object value) {
+        return switch (value) {
+            case null -> addNull();
+            case Long l -> addLong(l);
+            case Double d -> addDouble(d);
+            case String s -> addReference(STRING, s);
+            case java.sql.Date date -> addReference(DATE, date);
+            case java.sql.Time time -> addReference(TIME, time);
+            case java.sql.Timestamp ts -> addReference(TIMESTAMP, ts);
+            case ArrayValue array -> addReference(ARRAY, array);
+            default -> addReference(OBJECT, value);
+        };
+    }
+
+    /**
+     * Make the buffer read-only so it can be shared between threads and cached results
+     */
+    public ParameterBuffer freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Frozen copy with its arrays trimmed to the values, so a scratch buffer can be reused after it
+     */
+    public ParameterBuffer copy() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        var copy = new ParameterBuffer(0);
+        copy.tags = Arrays.copyOf(tags, size);
+        copy.primitives = primitives == null ? null : Arrays.copyOf(primitives, size);
+        copy.objects = objects == null ? null : Arrays.copyOf(objects, size);
+        copy.size = size;
+        return copy.freeze();
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    // Slots allocated, for callers deciding whether a scratch buffer is worth keeping
+    int capacity() {
+        return tags.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Type tag of a slot, one of the constants of this class
+     */
+    public byte getType(int index) {
+        return tags[Objects.checkIndex(index, size)];
+    }
+
+    public long getLong(int index) {
+        checkType(index, LONG);
+        return primitives[index];
+    }
+
+    public double getDouble(int index) {
+        checkType(index, DOUBLE);
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    public String getString(int index) {
+        checkType(index, STRING);
+        return (String) objects[index];
+    }
+
+    /**
+     * Copy of the type tags, one per parameter
+     */
+    public byte[] getTypes() {
+        return Arrays.copyOf(tags, size);
+    }
+
+    /**
+     * Whether the parameters have exactly the given type tags
+     */
+    public boolean hasTypes(byte[] types) {
+        return Arrays.equals(tags, 0, size, types, 0, types.length);
+    }
+
+    // Unchecked slot access for binding plans, which verify all types up front
+    long longAt(int index) {
+        return primitives[index];
+    }
+
+    double doubleAt(int index) {
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    Object objectAt(int index) {
+        return objects[index];
+    }
+
+    /**
+     * Value of a slot, boxed for LONG and DOUBLE slots
+     */
+    public Object get(int index) {
+        return switch (getType(index)) {
+            case NULL -> null;
+            case LONG -> primitives[index];
+            case DOUBLE -> Double.longBitsToDouble(primitives[index]);
+            default -> objects[index];
+        };
+    }
+
+    /**
+     * Set every parameter of the statement, starting at parameter 1, without boxing
+     */
+    public void bindTo(PreparedStatement pstmt) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            var parameterIndex = i + 1;
+            switch (tags[i]) {
+                case NULL -> pstmt.setNull(parameterIndex, Types.NULL);
+                case LONG -> pstmt.setLong(parameterIndex, primitives[i]);
+                case DOUBLE -> pstmt.setDouble(parameterIndex, Double.longBitsToDouble(primitives[i]));
+                case STRING -> pstmt.setString(parameterIndex, (String) objects[i]);
+                case DATE -> pstmt.setDate(parameterIndex, (java.sql.Date) objects[i]);
+                case TIME -> pstmt.setTime(parameterIndex, (java.sql.Time) objects[i]);
+                case TIMESTAMP -> pstmt.setTimestamp(parameterIndex, (java.sql.Timestamp) objects[i]);
+                case ARRAY -> pstmt.setArray(parameterIndex, ((ArrayValue) objects[i]).toSqlArray(pstmt));
+                default -> pstmt.setObject(parameterIndex, objects[i]);
+            }
+        }
+    }
+
+    /**
+     * Unmodifiable List view; values are boxed on access, not up front
+     */
+    public List<Object> asList() {
+        // A racing thread may create a second view; both read the same slots
+        var view = listView;
+        if (view == null) {
+            view = new ListView();
+            listView = view;
+        }
+        return view;
+    }
+
+    private final class ListView extends AbstractList<Object> implements RandomAccess {
+        @Override
+        public Object get(int index) {
+            return ParameterBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private ParameterBuffer addReference(byte tag, Object value) {
+        var slot = nextSlot();
+        tags[slot] = tag;
+        objects()[slot] = value;
+        return this;
+    }
+
+    private int nextSlot() {
+        if (frozen) {
+            throw new IllegalStateException("ParameterBuffer is frozen");
+        }
+        if (size == tags.length) {
+            var capacity = Math.max(8, size * 2);
+            tags = Arrays.copyOf(tags, capacity);
+            if (primitives != null) {
+                primitives = Arrays.copyOf(primitives, capacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+        return size++;
+    }
+
+    private long[] primitives() {
+        if (primitives == null) {
+            primitives = new long[tags.length];
+        }
+        return primitives;
+    }
+
+    private Object[] objects() {
+        if (objects == null) {
+            objects = new Object[tags.length];
+        }
+        return objects;
+    }
+
+    private void checkType(int index, byte expected) {
+        if (getType(index) != expected) {
+            throw new IllegalArgumentException("Parameter " + (index + 1) + " has type " + tags[index] + ", not " + expected);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ParameterBuffer other) || size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (tags[i] != other.tags[i]) {
+                return false;
+            }
+            var same = switch (tags[i]) {
+                case NULL -> true;
+                case LONG -> primitives[i] == other.primitives[i];
+                // Same rule as Double.equals: NaN equals NaN, 0.0 differs from -0.0
+                case DOUBLE -> Double.doubleToLongBits(getDouble(i)) == Double.doubleToLongBits(other.getDouble(i));
+                default -> Objects.equals(objects[i], other.objects[i]);
+            };
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        var hash = 1;
+        for (int i = 0; i < size; i++) {
+            var slot = switch (tags[i]) {
+                case NULL -> 0;
+                case LONG -> Long.hashCode(primitives[i]);
+                case DOUBLE -> Double.hashCode(getDouble(i));
+                default -> Objects.hashCode(objects[i]);
+            };
+            hash = 31 * hash + slot;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+}
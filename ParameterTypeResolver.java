@@ -0,0 +1,268 @@
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the JDBC type each parameter of a template should be bound with, so literals reach the
+ * database with the type of the column they are compared with or assigned to. A date string bound
+ * as VARCHAR, or a whole number bound as BIGINT against a DECIMAL column, makes the database cast
+ * the column instead of the value and skip its index.
+ * <p>
+ * The converter registers the target column of each parameter when it parses a template; the
+ * column's type then comes from {@link java.sql.DatabaseMetaData#getColumns}, cached per table.
+ * Parameters without a known column fall back to {@link java.sql.ParameterMetaData}, trusting only
+ * the specific types some drivers report for every parameter as VARCHAR. Resolved types are cached
+ * per template. Both caches expire after the TTL, so columns changed by DDL are picked up again.
+ * <p>
+ * Resolution assumes one database per converter configuration, like the converter's other caches.
+ */
+@Slf4j
+public class ParameterTypeResolver {
+
+    /**
+     * Column a parameter is compared with or assigned to; names as written in the SQL
+     */
+    @Value
+    public static class ColumnRef {
+        String schema;
+        String table;
+        String column;
+    }
+
+    /** Type of a parameter with no resolved target: bound as its literal */
+    public static final int UNRESOLVED = Types.NULL;
+
+    @Value
+    private static class Expiring<T> {
+        T value;
+        long expiresAt;
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+
+    // Neither null nor a value, so "nothing resolved" can be cached too
+    private static final int[] NONE = new int[0];
+
+    private final long ttlNanos;
+    private final BoundedLruCache<String, ColumnRef[]> targets;
+    private final BoundedLruCache<String, Expiring<int[]>> templateTypes;
+    private final BoundedLruCache<String, Expiring<Map<String, Integer>>> tableColumns;
+
+    /**
+     * @param maxTemplates templates whose targets and types are remembered
+     * @param maxTables    tables whose column types are remembered
+     * @param ttl          how long looked-up metadata is trusted
+     */
+    public ParameterTypeResolver(int maxTemplates, int maxTables, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.targets = new BoundedLruCache<>(maxTemplates, Long.MAX_VALUE, (sql, columns) -> columns.length);
+        this.templateTypes = new BoundedLruCache<>(maxTemplates, Long.MAX_VALUE, (sql, types) -> 1);
+        this.tableColumns = new BoundedLruCache<>(maxTables, Long.MAX_VALUE, (table, columns) -> 1);
+    }
+
+    /**
+     * Remember the target column of each parameter of a template; null entries have none
+     */
+    public void registerTargets(String preparedSql, ColumnRef[] columns) {
+        targets.put(preparedSql, columns);
+    }
+
+    /**
+     * JDBC type per parameter, {@link #UNRESOLVED} where none is known, or null when nothing is.
+     * The same array is returned until the template's entry expires, so callers may compare by identity.
+     */
+    public int[] resolve(PreparedStatement pstmt, String preparedSql, int parameterCount) {
+        var cached = templateTypes.get(preparedSql);
+        if (cached != null && !cached.isExpired() && (cached.getValue() == NONE || cached.getValue().length == parameterCount)) {
+            return cached.getValue() == NONE ? null : cached.getValue();
+        }
+
+        var types = new int[parameterCount];
+        var resolved = false;
+        var columns = targets.get(preparedSql);
+        try {
+            if (columns != null && columns.length == parameterCount) {
+                var connection = pstmt.getConnection();
+                for (int i = 0; i < parameterCount; i++) {
+                    if (columns[i] != null) {
+                        types[i] = columnType(connection, columns[i]);
+                        resolved |= types[i] != UNRESOLVED;
+                    }
+                }
+            }
+            // Some drivers answer getParameterMetaData with a round trip, so only ask for what is missing
+            if (hasUnresolved(types)) {
+                resolved |= fillFromParameterMetaData(pstmt, types);
+            }
+        } catch (SQLException e) {
+            log.debug("Metadata unavailable for: {}", preparedSql, e);
+        }
+
+        var value = resolved ? types : NONE;
+        templateTypes.put(preparedSql, new Expiring<>(value, System.nanoTime() + ttlNanos));
+        return resolved ? types : null;
+    }
+
+    /**
+     * Drop all cached metadata, e.g. after DDL; registered targets stay, they only depend on the SQL
+     */
+    public void invalidate() {
+        templateTypes.clear();
+        tableColumns.clear();
+    }
+
+    private int columnType(Connection connection, ColumnRef ref) throws SQLException {
+        var schema = ref.getSchema() == null ? null : unquoted(ref.getSchema());
+        var table = unquoted(ref.getTable());
+        var key = (schema == null ? "" : schema.toLowerCase(Locale.ROOT) + '.') + table.toLowerCase(Locale.ROOT);
+        var cached = tableColumns.get(key);
+        if (cached == null || cached.isExpired()) {
+            cached = new Expiring<>(loadColumns(connection, schema, table), System.nanoTime() + ttlNanos);
+            tableColumns.put(key, cached);
+        }
+        var type = cached.getValue().get(unquoted(ref.getColumn()).toLowerCase(Locale.ROOT));
+        return type == null ? UNRESOLVED : type;
+    }
+
+    /**
+     * Column types of the table by lower-case name; empty when the table is not found
+     */
+    private static Map<String, Integer> loadColumns(Connection connection, String schema, String table) throws SQLException {
+        var metaData = connection.getMetaData();
+        // Unquoted names are stored upper case by some databases and lower case by others
+        for (var name : new String[] { table, table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT) }) {
+            var columns = new HashMap<String, Integer>();
+            try (var rs = metaData.getColumns(connection.getCatalog(), schema, name, "%")) {
+                while (rs.next()) {
+                    // _ in the name is a pattern wildcard, so check what actually matched
+                    if (rs.getString("TABLE_NAME").equalsIgnoreCase(table)) {
+                        columns.put(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT), rs.getInt("DATA_TYPE"));
+                    }
+                }
+            }
+            if (!columns.isEmpty()) {
+                return columns;
+            }
+        }
+        return Map.of();
+    }
+
+    private static boolean hasUnresolved(int[] types) {
+        for (var type : types) {
+            if (type == UNRESOLVED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean fillFromParameterMetaData(PreparedStatement pstmt, int[] types) {
+        var resolved = false;
+        try {
+            var metaData = pstmt.getParameterMetaData();
+            if (metaData == null) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == UNRESOLVED) {
+                    var type = metaData.getParameterType(i + 1);
+                    if (isSpecific(type)) {
+                        types[i] = type;
+                        resolved = true;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Parameter metadata unavailable", e);
+        }
+        return resolved;
+    }
+
+    // Drivers that cannot describe parameters report VARCHAR or OTHER for all of them
+    private static boolean isSpecific(int type) {
+        return switch (type) {
+            case Types.DATE, Types.TIME, Types.TIMESTAMP, Types.DECIMAL, Types.NUMERIC, Types.INTEGER,
+                 Types.SMALLINT, Types.TINYINT, Types.BIGINT, Types.REAL, Types.FLOAT, Types.DOUBLE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Whether a literal of the buffer type already binds as the target type
+     */
+    static boolean matches(byte bufferType, int sqlType) {
+        return switch (bufferType) {
+            case ParameterBuffer.LONG -> sqlType == Types.BIGINT;
+            case ParameterBuffer.DOUBLE -> sqlType == Types.DOUBLE || sqlType == Types.FLOAT;
+            case ParameterBuffer.STRING -> sqlType == Types.VARCHAR || sqlType == Types.CHAR
+                || sqlType == Types.LONGVARCHAR || sqlType == Types.NVARCHAR || sqlType == Types.NCHAR;
+            case ParameterBuffer.DATE -> sqlType == Types.DATE;
+            case ParameterBuffer.TIME -> sqlType == Types.TIME;
+            case ParameterBuffer.TIMESTAMP -> sqlType == Types.TIMESTAMP;
+            default -> false;
+        };
+    }
+
+    /**
+     * The value converted to the Java type JDBC maps to the SQL type, or null when it cannot be
+     * converted exactly, in which case it is bound as it is. Numbers are never turned into text for
+     * text columns: the database would compare as strings, and 42 would no longer match '042'.
+     */
+    static Object coerce(Object value, int sqlType) {
+        try {
+            return switch (sqlType) {
+                case Types.DATE -> value instanceof String text ? java.sql.Date.valueOf(text.trim()) : null;
+                case Types.TIME -> value instanceof String text ? java.sql.Time.valueOf(text.trim()) : null;
+                case Types.TIMESTAMP -> value instanceof String text ? timestamp(text.trim())
+                    : value instanceof java.sql.Date date ? new java.sql.Timestamp(date.getTime()) : null;
+                case Types.DECIMAL, Types.NUMERIC -> switch (value) {
+                    case Long number -> BigDecimal.valueOf(number);
+                    case Double number -> BigDecimal.valueOf(number);
+                    case String text -> new BigDecimal(text.trim());
+                    default -> null;
+                };
+                case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> switch (value) {
+                    case Long number -> Math.toIntExact(number);
+                    case String text -> Integer.valueOf(text.trim());
+                    default -> null;
+                };
+                case Types.BIGINT -> value instanceof String text ? Long.valueOf(text.trim()) : null;
+                case Types.REAL, Types.FLOAT, Types.DOUBLE -> switch (value) {
+                    case Long number -> exactDouble(number);
+                    case String text -> Double.valueOf(text.trim());
+                    default -> null;
+                };
+                default -> null;
+            };
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static Double exactDouble(long number) {
+        // Past 2^53 not every long has a double; 2^63 only looks exact because the cast back saturates
+        var converted = (double) number;
+        return converted != 0x1p63 && (long) converted == number ? converted : null;
+    }
+
+    private static java.sql.Timestamp timestamp(String text) {
+        // A bare date compared with a timestamp column means its midnight
+        return java.sql.Timestamp.valueOf(text.length() == 10 ? text + " 00:00:00" : text);
+    }
+
+    private static String unquoted(String name) {
+        var quoted = name.length() >= 2 && (name.charAt(0) == '"' || name.charAt(0) == '`' || name.charAt(0) == '[');
+        return quoted ? name.substring(1, name.length() - 1) : name;
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ParameterTypeResolverTest {
+
+    private static final String SQL = "SELECT * FROM orders WHERE order_date >= ? AND total > ?";
+
+    private final AtomicInteger parameterMetaDataCalls = new AtomicInteger();
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    // One table, orders, with a DATE and a DECIMAL column
+    private ResultSet columns() {
+        var rows = List.of(Map.<String, Object>of("COLUMN_NAME", "order_date", "DATA_TYPE", Types.DATE),
+            Map.<String, Object>of("COLUMN_NAME", "total", "DATA_TYPE", Types.DECIMAL));
+        var row = new AtomicInteger(-1);
+        return proxy(ResultSet.class, (proxy, method, args) -> switch (method.getName()) {
+            case "next" -> row.incrementAndGet() < rows.size();
+            case "getString" -> args[0].equals("TABLE_NAME") ? "orders" : rows.get(row.get()).get(args[0]);
+            case "getInt" -> rows.get(row.get()).get(args[0]);
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private PreparedStatement statement() {
+        var metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getColumns" -> columns();
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+        var connection = proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getMetaData" -> metaData;
+            case "getCatalog" -> null;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+        var parameterMetaData = proxy(ParameterMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getParameterType" -> Types.INTEGER;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+        return proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getConnection" -> connection;
+            case "getParameterMetaData" -> {
+                parameterMetaDataCalls.incrementAndGet();
+                yield parameterMetaData;
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    @Test
+    void parameterMetaDataIsOnlyReadForUnresolvedSlots() {
+        var resolver = new ParameterTypeResolver(16, 16, Duration.ofMinutes(1));
+        resolver.registerTargets(SQL, new ParameterTypeResolver.ColumnRef[] {
+            new ParameterTypeResolver.ColumnRef(null, "orders", "order_date"),
+            new ParameterTypeResolver.ColumnRef(null, "orders", "total") });
+
+        assertArrayEquals(new int[] { Types.DATE, Types.DECIMAL }, resolver.resolve(statement(), SQL, 2));
+        assertEquals(0, parameterMetaDataCalls.get());
+
+        var partial = "SELECT * FROM orders WHERE order_date >= ? AND quantity > ?";
+        resolver.registerTargets(partial, new ParameterTypeResolver.ColumnRef[] {
+            new ParameterTypeResolver.ColumnRef(null, "orders", "order_date"), null });
+        assertArrayEquals(new int[] { Types.DATE, Types.INTEGER }, resolver.resolve(statement(), partial, 2));
+        assertEquals(1, parameterMetaDataCalls.get());
+    }
+
+    @Test
+    void numbersAreNotCoercedToText() {
+        assertNull(ParameterTypeResolver.coerce(42L, Types.VARCHAR));
+        assertNull(ParameterTypeResolver.coerce(42L, Types.CHAR));
+        assertEquals(java.sql.Date.valueOf("2023-01-01"), ParameterTypeResolver.coerce("2023-01-01", Types.DATE));
+    }
+
+    @Test
+    void longsWithoutAnExactDoubleAreBoundAsTheyAre() {
+        assertEquals(42.0, ParameterTypeResolver.coerce(42L, Types.DOUBLE));
+        assertEquals((double) (1L << 53), ParameterTypeResolver.coerce(1L << 53, Types.DOUBLE));
+        assertNull(ParameterTypeResolver.coerce((1L << 53) + 1, Types.DOUBLE));
+        assertNull(ParameterTypeResolver.coerce(Long.MAX_VALUE, Types.FLOAT));
+    }
+}
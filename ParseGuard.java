@@ -0,0 +1,225 @@
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps pathological SQL from dominating conversion latency.
+ * <p>
+ * With a time budget, parses run on a small fixed pool of daemon threads and the caller waits at
+ * most the budget. The parser cannot be interrupted, so an overrunning parse keeps its thread
+ * until it ends; the pool is bounded, so that costs at most {@code threads} threads, never more.
+ * SQL that fails to parse or overruns is remembered in a bounded negative cache, keyed by a
+ * fingerprint of the text, so retries fail at once instead of parsing again. After
+ * {@code breakerThreshold} consecutive overruns the breaker opens and every parse is refused for
+ * the cool-down; after it, a single further overrun opens it again and a successful parse closes it.
+ * <p>
+ * Every refusal is a {@link JSQLParserException}, like any other parse failure. A
+ * {@link SqlRejectedException} from the parse is passed on as it is and not remembered.
+ */
+@Slf4j
+public class ParseGuard implements AutoCloseable {
+
+    public enum FailurePolicy {
+        /** Throw the parse failure to the caller */
+        REJECT,
+        /** Return the SQL unchanged, without parameters, and with a warning */
+        BYPASS
+    }
+
+    /**
+     * Identity of a SQL text: length plus two independent 32 and 64 bit hashes, so huge
+     * statements cost a fixed amount of cache memory
+     */
+    @Value
+    static class Fingerprint {
+        int length;
+        int hash;
+        long fnv;
+
+        static Fingerprint of(String sql) {
+            var fnv = 0xcbf29ce484222325L;
+            for (int i = 0; i < sql.length(); i++) {
+                fnv = (fnv ^ sql.charAt(i)) * 0x100000001b3L;
+            }
+            return new Fingerprint(sql.length(), sql.hashCode(), fnv);
+        }
+    }
+
+    /**
+     * Refusal that says nothing about the statement itself, so it is not remembered
+     */
+    private static final class CapacityException extends JSQLParserException {
+        CapacityException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+    private final BoundedLruCache<Fingerprint, String> failures;
+    private final int breakerThreshold;
+    private final long breakerCooldownNanos;
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+    private volatile long breakerOpenUntil;
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder refusals = new LongAdder();
+
+    /**
+     * @param timeout           budget per parse, or null to parse on the calling thread without one
+     * @param threads           parse threads used with a budget
+     * @param negativeCacheSize failed statements remembered; 0 disables the negative cache
+     */
+    public ParseGuard(Duration timeout, int threads, int negativeCacheSize, int breakerThreshold, Duration breakerCooldown) {
+        this.timeout = timeout;
+        this.executor = timeout == null ? null : new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 64), daemonThreads(), new ThreadPoolExecutor.AbortPolicy());
+        this.failures = negativeCacheSize > 0
+            ? new BoundedLruCache<>(negativeCacheSize, Long.MAX_VALUE, (key, reason) -> 1)
+            : null;
+        this.breakerThreshold = breakerThreshold;
+        this.breakerCooldownNanos = breakerCooldown.toNanos();
+    }
+
+    private static ThreadFactory daemonThreads() {
+        var counter = new AtomicInteger();
+        return task -> {
+            var thread = new Thread(task, "sql-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run the parse under the budget, the negative cache and the breaker
+     */
+    public <T> T parse(String sql, Callable<T> parser) throws JSQLParserException {
+        var fingerprint = failures == null ? null : Fingerprint.of(sql);
+        if (fingerprint != null) {
+            var reason = failures.get(fingerprint);
+            if (reason != null) {
+                refusals.increment();
+                throw new JSQLParserException(STR."Previously failed to parse: \{reason}");
+            }
+        }
+        if (isBreakerOpen()) {
+            refusals.increment();
+            throw new JSQLParserException("Parse circuit breaker is open after repeated parse timeouts");
+        }
+
+        try {
+            var parsed = executor == null ? parser.call() : parseWithBudget(parser);
+            consecutiveTimeouts.set(0);
+            return parsed;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            if (consecutiveTimeouts.incrementAndGet() >= breakerThreshold) {
+                breakerOpenUntil = System.nanoTime() + breakerCooldownNanos;
+                // Half-open after the cool-down: one more timeout reopens it, a success closes it
+                consecutiveTimeouts.set(breakerThreshold - 1);
+                log.warn("Parse circuit breaker opened for {} ms", TimeUnit.NANOSECONDS.toMillis(breakerCooldownNanos));
+            }
+            var reason = STR."Parse exceeded its budget of \{timeout.toMillis()} ms";
+            if (fingerprint != null) {
+                failures.put(fingerprint, reason);
+            }
+            throw new JSQLParserException(reason);
+        } catch (CapacityException | SqlRejectedException e) {
+            // Not remembered: a remembered failure would come back as a plain, bypassable one
+            throw e;
+        } catch (JSQLParserException e) {
+            if (fingerprint != null) {
+                failures.put(fingerprint, String.valueOf(e.getMessage()));
+            }
+            throw e;
+        } catch (Exception e) {
+            throw new JSQLParserException(e);
+        }
+    }
+
+    private <T> T parseWithBudget(Callable<T> parser) throws Exception {
+        var started = new AtomicBoolean();
+        var task = new FutureTask<>(() -> {
+            started.set(true);
+            return parser.call();
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            refusals.increment();
+            throw new CapacityException("Parse capacity exhausted, all parse threads and queue slots are busy", e);
+        }
+        try {
+            return task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(false);
+            if (!started.get()) {
+                // Waited in the queue behind other parses: not this statement's fault
+                refusals.increment();
+                throw new CapacityException("Parse capacity exhausted, the statement did not start within the budget", e);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw new JSQLParserException(e.getCause());
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CapacityException("Interrupted while waiting for the parser", e);
+        }
+    }
+
+    /**
+     * Whether parses are currently refused by the breaker
+     */
+    public boolean isBreakerOpen() {
+        var openUntil = breakerOpenUntil;
+        return openUntil != 0L && System.nanoTime() - openUntil < 0;
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Parses refused by the negative cache, the breaker or lack of capacity
+     */
+    public long getRefusedCount() {
+        return refusals.sum();
+    }
+
+    /**
+     * Counters of the negative cache, or null when it is disabled
+     */
+    public BoundedLruCache.Stats getNegativeCacheStats() {
+        return failures == null ? null : failures.stats();
+    }
+
+    public void clearNegativeCache() {
+        if (failures != null) {
+            failures.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection cache of PreparedStatements keyed by prepared SQL, for drivers without
+ * client-side statement caching.
+ * <p>
+ * Statements are handed out as proxies: close() closes their result sets, clears the parameters
+ * and any pending batch, restores the row limit, query timeout and fetch size the statement was
+ * prepared with, and parks the real statement for the next caller with the same SQL; a statement that cannot be
+ * reset is closed instead. Each connection keeps a bounded LRU of
+ * idle statements, and statements pushed out of it are really closed. Statements of closed
+ * connections are released on the next sweep, or immediately through {@link #evict(Connection)}.
+ * <p>
+ * Pooled connections should be cached by the physical connection; pool wrappers usually
+ * close their statements when they are returned to the pool.
+ */
+@Slf4j
+public class PreparedStatementCache {
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+        long idleStatements;
+    }
+
+    /** Number of acquisitions between sweeps for closed connections */
+    private static final int SWEEP_INTERVAL = 256;
+
+    private final int maxStatementsPerConnection;
+    private final Map<Connection, ConnectionStatements> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger acquisitionsSinceSweep = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PreparedStatementCache(int maxStatementsPerConnection) {
+        if (maxStatementsPerConnection <= 0) {
+            throw new IllegalArgumentException("Statement cache size must be positive");
+        }
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+    }
+
+    /**
+     * A real statement with the limits it was prepared with, which borrowers may change
+     */
+    private static final class CachedStatement {
+        final PreparedStatement statement;
+        final int maxRows;
+        final int queryTimeout;
+        final int fetchSize;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+            this.fetchSize = statement.getFetchSize();
+        }
+
+        /**
+         * Drop what the last borrower left behind: pending batch rows would otherwise run with the next
+         * executeBatch, and an open result set would hold its cursor and locks until the next execute
+         */
+        void reset() throws SQLException {
+            var results = statement.getResultSet();
+            if (results != null) {
+                results.close();
+            }
+            statement.clearBatch();
+            statement.clearParameters();
+            statement.clearWarnings();
+            if (statement.getMaxRows() != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+            if (statement.getQueryTimeout() != queryTimeout) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            if (statement.getFetchSize() != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+        }
+    }
+
+    /**
+     * Idle statements of a single connection, least recently used first
+     */
+    private final class ConnectionStatements {
+        private final LinkedHashMap<String, CachedStatement> idle = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxStatementsPerConnection) {
+                    return false;
+                }
+                evictions.increment();
+                closeQuietly(eldest.getValue().statement);
+                return true;
+            }
+        };
+
+        synchronized CachedStatement take(String sql) {
+            return idle.remove(sql);
+        }
+
+        /**
+         * Park a statement for reuse; returns false when it has to be closed instead
+         */
+        synchronized boolean park(String sql, CachedStatement statement) {
+            if (idle.containsKey(sql)) {
+                return false;
+            }
+            idle.put(sql, statement);
+            return true;
+        }
+
+        synchronized void closeAll() {
+            idle.values().forEach(cached -> closeQuietly(cached.statement));
+            idle.clear();
+        }
+
+        synchronized int size() {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Return a cached statement for the SQL, or prepare a new one; closing the returned statement hands it back
+     */
+    public PreparedStatement acquire(Connection connection, String sql) throws SQLException {
+        if (acquisitionsSinceSweep.incrementAndGet() >= SWEEP_INTERVAL) {
+            acquisitionsSinceSweep.set(0);
+            sweepClosedConnections();
+        }
+
+        var statements = connections.computeIfAbsent(connection, c -> new ConnectionStatements());
+        var cached = statements.take(sql);
+        if (cached != null && !cached.statement.isClosed()) {
+            hits.increment();
+        } else {
+            misses.increment();
+            var statement = connection.prepareStatement(sql);
+            try {
+                cached = new CachedStatement(statement);
+            } catch (SQLException e) {
+                closeQuietly(statement);
+                throw e;
+            }
+        }
+        return wrap(connection, sql, cached, statements);
+    }
+
+    /**
+     * Close and forget every cached statement of the connection; call before closing it
+     */
+    public void evict(Connection connection) {
+        var statements = connections.remove(connection);
+        if (statements != null) {
+            statements.closeAll();
+        }
+    }
+
+    public void closeAll() {
+        for (var connection : new ArrayList<>(connections.keySet())) {
+            evict(connection);
+        }
+    }
+
+    public Stats stats() {
+        long idle = 0;
+        for (var statements : connections.values()) {
+            idle += statements.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), idle);
+    }
+
+    private void sweepClosedConnections() {
+        for (var connection : new ArrayList<>(connections.keySet())) {
+            try {
+                if (connection.isClosed()) {
+                    evict(connection);
+                }
+            } catch (SQLException e) {
+                evict(connection);
+            }
+        }
+    }
+
+    private PreparedStatement wrap(Connection connection, String sql, CachedStatement cached,
+                                   ConnectionStatements statements) {
+        var statement = cached.statement;
+        var handler = new InvocationHandler() {
+            private boolean closed;
+            // Result sets handed out, including ones kept open with getMoreResults(KEEP_CURRENT_RESULT)
+            private final List<ResultSet> results = new ArrayList<>();
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!closed) {
+                            closed = true;
+                            // Closing a statement closes its result sets, parked or not
+                            results.forEach(PreparedStatementCache::closeQuietly);
+                            results.clear();
+                            release(connection, sql, cached, statements);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return closed || statement.isClosed();
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    case "toString" -> {
+                        return "Cached" + statement;
+                    }
+                    default -> {
+                        if (closed) {
+                            throw new SQLException("Statement is closed");
+                        }
+                    }
+                }
+                try {
+                    var result = method.invoke(statement, args);
+                    if (result instanceof ResultSet resultSet) {
+                        results.add(resultSet);
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+    }
+
+    private void release(Connection connection, String sql, CachedStatement cached, ConnectionStatements statements) {
+        try {
+            if (!connection.isClosed() && !cached.statement.isClosed()) {
+                cached.reset();
+                if (connections.get(connection) == statements && statements.park(sql, cached)) {
+                    return;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Discarding cached statement that could not be reset: {}", sql, e);
+        }
+        closeQuietly(cached.statement);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close evicted statement", e);
+        }
+    }
+
+    private static void closeQuietly(ResultSet results) {
+        try {
+            results.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close result set of a cached statement", e);
+        }
+    }
+}
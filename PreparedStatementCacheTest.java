@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreparedStatementCacheTest {
+
+    /**
+     * In-memory stand-in for a driver statement: keeps the bound parameters, the batch, the limits
+     * and the number of result sets still open
+     */
+    private static final class FakeStatement {
+        final Map<Integer, Object> parameters = new TreeMap<>();
+        final List<Map<Integer, Object>> batch = new ArrayList<>();
+        final List<Map<Integer, Object>> executed = new ArrayList<>();
+        int maxRows;
+        int queryTimeout;
+        int fetchSize = 10;
+        boolean closed;
+        boolean failClearBatch;
+        int openResults;
+        ResultSet current;
+
+        ResultSet resultSet() {
+            openResults++;
+            var closed = new boolean[1];
+            return (ResultSet) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        if (!closed[0]) {
+                            closed[0] = true;
+                            openResults--;
+                        }
+                        yield null;
+                    }
+                    case "isClosed" -> closed[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "setLong", "setString" -> parameters.put((Integer) args[0], args[1]);
+                    case "addBatch" -> batch.add(new TreeMap<>(parameters));
+                    case "executeBatch" -> {
+                        executed.addAll(batch);
+                        var counts = new int[batch.size()];
+                        batch.clear();
+                        yield counts;
+                    }
+                    case "clearBatch" -> {
+                        if (failClearBatch) {
+                            throw new SQLException("clearBatch failed");
+                        }
+                        batch.clear();
+                        yield null;
+                    }
+                    case "clearParameters" -> {
+                        parameters.clear();
+                        yield null;
+                    }
+                    case "executeQuery" -> current = resultSet();
+                    case "getGeneratedKeys" -> resultSet();
+                    case "getResultSet" -> current;
+                    case "clearWarnings" -> null;
+                    case "getMaxRows" -> maxRows;
+                    case "setMaxRows" -> maxRows = (Integer) args[0];
+                    case "getQueryTimeout" -> queryTimeout;
+                    case "setQueryTimeout" -> queryTimeout = (Integer) args[0];
+                    case "getFetchSize" -> fetchSize;
+                    case "setFetchSize" -> fetchSize = (Integer) args[0];
+                    case "isClosed" -> closed;
+                    case "close" -> closed = true;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        }
+    }
+
+    private final List<FakeStatement> prepared = new ArrayList<>();
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+        new Class<?>[] { Connection.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> {
+                var statement = new FakeStatement();
+                prepared.add(statement);
+                yield statement.proxy();
+            }
+            case "isClosed" -> false;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+
+    @Test
+    void statementReusedAfterFailedBatchDoesNotRunStaleRows() throws SQLException {
+        var cache = new PreparedStatementCache(4);
+        var sql = "INSERT INTO t (id) VALUES (?)";
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (var pstmt = cache.acquire(connection, sql)) {
+                pstmt.setLong(1, 1);
+                pstmt.addBatch();
+                pstmt.setLong(1, 2);
+                pstmt.addBatch();
+                throw new IllegalStateException("binding failed");
+            }
+        });
+
+        try (var pstmt = cache.acquire(connection, sql)) {
+            pstmt.setLong(1, 3);
+            pstmt.addBatch();
+            assertEquals(1, pstmt.executeBatch().length);
+        }
+
+        assertEquals(1, prepared.size(), "the statement is reused");
+        assertEquals(List.of(Map.of(1, 3L)), prepared.get(0).executed);
+        assertEquals(1L, cache.stats().getHits());
+    }
+
+    @Test
+    void limitsChangedByOneBorrowerAreRestoredForTheNext() throws SQLException {
+        var cache = new PreparedStatementCache(4);
+        var sql = "SELECT * FROM t WHERE id = ?";
+
+        try (var pstmt = cache.acquire(connection, sql)) {
+            pstmt.setMaxRows(5);
+            pstmt.setQueryTimeout(30);
+            pstmt.setFetchSize(1_000);
+        }
+
+        try (var pstmt = cache.acquire(connection, sql)) {
+            assertEquals(0, pstmt.getMaxRows());
+            assertEquals(0, pstmt.getQueryTimeout());
+            assertEquals(10, pstmt.getFetchSize());
+        }
+        assertEquals(1, prepared.size());
+    }
+
+    @Test
+    void resultSetsLeftOpenAreClosedBeforeTheStatementIsParked() throws SQLException {
+        var cache = new PreparedStatementCache(4);
+        var sql = "SELECT * FROM t WHERE id = ?";
+
+        try (var pstmt = cache.acquire(connection, sql)) {
+            pstmt.setLong(1, 1);
+            pstmt.executeQuery();
+            pstmt.getGeneratedKeys();
+        }
+
+        assertEquals(0, prepared.get(0).openResults);
+        assertEquals(1L, cache.stats().getIdleStatements());
+    }
+
+    @Test
+    void statementThatCannotBeResetIsClosedInsteadOfPooled() throws SQLException {
+        var cache = new PreparedStatementCache(4);
+        var sql = "INSERT INTO t (id) VALUES (?)";
+
+        try (var pstmt = cache.acquire(connection, sql)) {
+            prepared.get(0).failClearBatch = true;
+            pstmt.setLong(1, 1);
+            pstmt.addBatch();
+        }
+
+        assertTrue(prepared.get(0).closed);
+        assertEquals(0L, cache.stats().getIdleStatements());
+        cache.acquire(connection, sql).close();
+        assertEquals(2, prepared.size(), "a fresh statement is prepared");
+    }
+}
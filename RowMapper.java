@@ -0,0 +1,13 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an object; must not move the cursor
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * @param rowNumber zero-based position of the row in the result
+     */
+    T mapRow(ResultSet resultSet, int rowNumber) throws SQLException;
+}
@@ -0,0 +1,237 @@
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Converts, prepares and executes literal-laden SQL off the calling thread.
+ * <p>
+ * Every call takes a connection from the DataSource, runs the statement through
+ * {@link SqlToPreparedStatementConverter#createPreparedStatement} and completes the returned
+ * future with the result. Work runs on a virtual thread per call unless another executor is
+ * configured. A semaphore per DataSource caps the statements in flight, so a burst of requests
+ * waits for a permit here instead of starving the connection pool for everyone else.
+ * <p>
+ * Cancelling the returned future, or completing it exceptionally (for example with
+ * {@link CompletableFuture#orTimeout}), calls {@link Statement#cancel()} on the running statement
+ * so the database stops working on it at once. Futures derived with thenApply and friends do not
+ * propagate cancellation back; cancel the future returned here.
+ * <p>
+ * With statement caching enabled, each statement goes back to the cache when its call ends and
+ * the cache restores the query timeout set here; a connection's statements are only closed once
+ * the connection itself is closed.
+ */
+@Slf4j
+public class SqlAsyncExecutor implements AutoCloseable {
+
+    @Value
+    @Builder
+    public static class AsyncOptions {
+        /** Runs conversion, prepare and execution; null starts a virtual thread per call */
+        @Builder.Default
+        Executor executor = null;
+        /** Statements in flight per DataSource; further calls wait for a permit before taking a connection */
+        @Builder.Default
+        int maxConcurrentPerDataSource = 16;
+        /** Applied with Statement.setQueryTimeout; null keeps the driver default */
+        @Builder.Default
+        Duration queryTimeout = null;
+    }
+
+    /**
+     * Work done with a prepared statement, on the executor
+     */
+    @FunctionalInterface
+    private interface StatementWork<T> {
+        T run(PreparedStatement pstmt, StatementFuture<T> future) throws SQLException;
+    }
+
+    /**
+     * Future that knows the statement running for it, so cancellation can reach the database
+     */
+    private static final class StatementFuture<T> extends CompletableFuture<T> {
+        private volatile Statement statement;
+
+        StatementFuture() {
+            whenComplete((result, failure) -> {
+                if (failure != null) {
+                    cancelStatement();
+                }
+            });
+        }
+
+        /**
+         * Register the running statement; false if the future already completed, in which case the statement must not run
+         */
+        boolean attach(Statement running) {
+            statement = running;
+            if (isDone()) {
+                statement = null;
+                return false;
+            }
+            return true;
+        }
+
+        void detach() {
+            statement = null;
+        }
+
+        private void cancelStatement() {
+            var running = statement;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException e) {
+                    log.debug("Statement.cancel failed", e);
+                }
+            }
+        }
+    }
+
+    private final AsyncOptions options;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ConcurrentHashMap<DataSource, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public SqlAsyncExecutor() {
+        this(AsyncOptions.builder().build());
+    }
+
+    public SqlAsyncExecutor(AsyncOptions options) {
+        this.options = options;
+        this.ownedExecutor = options.getExecutor() == null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.executor = ownedExecutor != null ? ownedExecutor : options.getExecutor();
+    }
+
+    /**
+     * Convert and run a query, mapping every row
+     */
+    public <T> CompletableFuture<List<T>> convertAndQueryAsync(DataSource dataSource, String sql, RowMapper<T> rowMapper) {
+        return submit(dataSource, sql, (pstmt, future) -> {
+            var rows = new ArrayList<T>();
+            try (var resultSet = pstmt.executeQuery()) {
+                // A cancelled future stops the mapping too, not only the statement
+                while (!future.isDone() && resultSet.next()) {
+                    rows.add(rowMapper.mapRow(resultSet, rows.size()));
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Convert and run an INSERT, UPDATE, DELETE or DDL statement, completing with its update count
+     */
+    public CompletableFuture<Integer> convertAndUpdateAsync(DataSource dataSource, String sql) {
+        return submit(dataSource, sql, (pstmt, future) -> pstmt.executeUpdate());
+    }
+
+    /**
+     * Statements currently allowed to start against the DataSource
+     */
+    public int availablePermits(DataSource dataSource) {
+        var semaphore = permits.get(dataSource);
+        return semaphore == null ? options.getMaxConcurrentPerDataSource() : semaphore.availablePermits();
+    }
+
+    private <T> CompletableFuture<T> submit(DataSource dataSource, String sql, StatementWork<T> work) {
+        var future = new StatementFuture<T>();
+        var semaphore = permits.computeIfAbsent(dataSource, key -> new Semaphore(options.getMaxConcurrentPerDataSource(), true));
+        try {
+            executor.execute(() -> run(dataSource, sql, work, semaphore, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(DataSource dataSource, String sql, StatementWork<T> work, Semaphore semaphore,
+                         StatementFuture<T> future) {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+        }
+
+        T result;
+        try {
+            if (future.isDone()) {
+                return;
+            }
+            result = execute(dataSource, sql, work, future);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            return;
+        } finally {
+            semaphore.release();
+        }
+        future.complete(result);
+    }
+
+    private <T> T execute(DataSource dataSource, String sql, StatementWork<T> work, StatementFuture<T> future)
+            throws Exception {
+        var connection = dataSource.getConnection();
+        try (connection) {
+            // Closing returns a cached statement to the statement cache, which restores its timeout
+            try (var pstmt = SqlToPreparedStatementConverter.createPreparedStatement(connection, sql)) {
+                if (options.getQueryTimeout() != null) {
+                    pstmt.setQueryTimeout((int) Math.max(1, options.getQueryTimeout().toSeconds()));
+                }
+                if (!future.attach(pstmt)) {
+                    return null;
+                }
+                try {
+                    return work.run(pstmt, future);
+                } finally {
+                    future.detach();
+                }
+            }
+        } finally {
+            releaseCachedStatements(connection);
+        }
+    }
+
+    /**
+     * Close the cached statements of a connection this executor closed; a connection that stays
+     * open, like one a DataSource shares between callers, keeps them for the next call
+     */
+    private static void releaseCachedStatements(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                SqlToPreparedStatementConverter.closeCachedStatements(connection);
+            }
+        } catch (SQLException e) {
+            log.debug("Connection state unavailable, leaving its statements to the cache sweep", e);
+        }
+    }
+
+    /**
+     * Stop the virtual-thread executor created by this instance; a configured executor is left running
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
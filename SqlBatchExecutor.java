@@ -0,0 +1,356 @@
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Executes many literal-laden statements as JDBC batches.
+ * Each SQL string is converted with {@link SqlToPreparedStatementConverter#convertSqlToPrepared(String)},
+ * consecutive statements sharing the same prepared SQL are bound to one PreparedStatement with
+ * addBatch, and each run is flushed with executeBatch when the template changes or the run
+ * reaches the configured batch size, so statements execute in input order.
+ * Multi-row INSERT ... VALUES statements can be split into statements of a few rows each and
+ * streamed as batches of their own, see {@link BatchOptions#isSplitMultiRowInserts()}.
+ */
+@Slf4j
+public class SqlBatchExecutor {
+
+    @Value
+    @Builder
+    public static class BatchOptions {
+        /** Statements bound per executeBatch call */
+        @Builder.Default
+        int batchSize = 500;
+        /**
+         * Only group consecutive statements with the same prepared SQL, so statements run in input order.
+         * <p>
+         * Setting it to false groups every statement of a template into one batch, however far apart
+         * they are, for fewer round trips with interleaved templates. Statements then no longer run in
+         * input order: an UPDATE, DELETE, UPDATE sequence runs both UPDATEs first. Only turn it off
+         * when the statements are independent of each other.
+         */
+        @Builder.Default
+        boolean preserveOrder = true;
+        /** Statements held across all groups before everything is flushed, which bounds memory for iterator input */
+        @Builder.Default
+        int maxPendingStatements = 10_000;
+        /**
+         * Run multi-row INSERT ... VALUES statements as batches of small fixed-size inserts. The split
+         * statements run in a transaction of their own under auto-commit, or behind a savepoint in the
+         * caller's transaction, so a failing row inserts nothing, as with the single statement; on a
+         * driver without savepoints a failure inside the caller's transaction leaves the earlier rows
+         * for the caller to roll back.
+         */
+        @Builder.Default
+        boolean splitMultiRowInserts = false;
+        /** Rows per statement when an insert is split, at least 1; batchSize statements go into each executeBatch */
+        int rowsPerStatement;
+
+        public static class BatchOptionsBuilder {
+            private int rowsPerStatement = 1;
+
+            public BatchOptionsBuilder rowsPerStatement(int rowsPerStatement) {
+                if (rowsPerStatement <= 0) {
+                    throw new IllegalArgumentException("rowsPerStatement must be positive");
+                }
+                this.rowsPerStatement = rowsPerStatement;
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Receives the update count of each statement, identified by its position in the input
+     */
+    @FunctionalInterface
+    public interface UpdateCountListener {
+        void onUpdateCount(long index, int updateCount);
+    }
+
+    /**
+     * Statements run together, returning their update count
+     */
+    @FunctionalInterface
+    private interface InsertWork {
+        int run() throws Exception;
+    }
+
+    /**
+     * Statements of one template waiting to be flushed
+     */
+    private static final class Group {
+        final String preparedSql;
+        final List<Long> indexes = new ArrayList<>();
+        final List<ParameterBuffer> parameters = new ArrayList<>();
+
+        Group(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+    }
+
+    private SqlBatchExecutor() {
+    }
+
+    public static int[] executeBatch(Connection connection, List<String> sqls) throws Exception {
+        return executeBatch(connection, sqls, BatchOptions.builder().build());
+    }
+
+    /**
+     * Execute all statements and return their update counts in input order
+     */
+    public static int[] executeBatch(Connection connection, List<String> sqls, BatchOptions options) throws Exception {
+        var counts = new int[sqls.size()];
+        executeBatch(connection, sqls.iterator(), options, (index, count) -> counts[(int) index] = count);
+        return counts;
+    }
+
+    /**
+     * Execute statements from a possibly unbounded source. Update counts are reported as their
+     * batches complete, tagged with the statement's input position.
+     *
+     * @return the number of statements executed
+     */
+    public static long executeBatch(Connection connection, Iterator<String> sqls, BatchOptions options,
+                                    UpdateCountListener listener) throws Exception {
+        var groups = new LinkedHashMap<String, Group>();
+        long index = 0;
+        var pending = 0;
+        String lastTemplate = null;
+
+        while (sqls.hasNext()) {
+            var sql = sqls.next();
+            var insert = options.isSplitMultiRowInserts() ? SqlToPreparedStatementConverter.splitMultiRowInsert(sql) : null;
+            if (insert != null) {
+                // Runs on statements of its own, after everything queued before it
+                flushAll(connection, groups, listener);
+                pending = 0;
+                lastTemplate = null;
+                listener.onUpdateCount(index, executeInsert(connection, insert, options));
+                index++;
+                continue;
+            }
+
+            var result = SqlToPreparedStatementConverter.convertSqlToPrepared(sql);
+            SqlToPreparedStatementConverter.logWarnings(sql, result);
+
+            var template = result.getPreparedSql();
+            if (options.isPreserveOrder() && lastTemplate != null && !lastTemplate.equals(template)) {
+                flushAll(connection, groups, listener);
+                pending = 0;
+            }
+
+            var group = groups.computeIfAbsent(template, Group::new);
+            group.indexes.add(index);
+            group.parameters.add(result.getParameterBuffer());
+            pending++;
+
+            if (group.indexes.size() >= options.getBatchSize()) {
+                pending -= group.indexes.size();
+                flush(connection, group, listener);
+                groups.remove(template);
+            } else if (pending >= options.getMaxPendingStatements()) {
+                flushAll(connection, groups, listener);
+                pending = 0;
+            }
+
+            lastTemplate = template;
+            index++;
+        }
+
+        flushAll(connection, groups, listener);
+        return index;
+    }
+
+    /**
+     * Execute a split multi-row insert; returns the total update count, or SUCCESS_NO_INFO when
+     * the driver did not report every count.
+     * <p>
+     * The first statement of the split is converted like any other statement, for the converter's
+     * validation, warnings and metrics, and every statement of the split uses its prepared SQL.
+     * When the converter would not bind the values the way the split reads them, e.g. because the
+     * inlining policy keeps some inline, the insert runs as one statement instead.
+     */
+    public static int executeInsert(Connection connection, MultiRowInsert insert, BatchOptions options) throws Exception {
+        var rowsPerStatement = Math.min(options.getRowsPerStatement(), insert.getRowCount());
+        var converted = SqlToPreparedStatementConverter.convertSqlToPrepared(insert.statement(rowsPerStatement));
+        var statements = insert.statements(rowsPerStatement);
+        var first = statements.next();
+        if (!converted.getParameterBuffer().equals(first)) {
+            log.debug("Converter parameters differ from the split, running unsplit: {}", converted.getPreparedSql());
+            return executeUnsplit(connection, insert.getSql());
+        }
+
+        var warnings = new LinkedHashSet<>(converted.getWarnings());
+        if (rowsPerStatement < insert.getRowCount()) {
+            // The converter only saw the first rows
+            warnings.addAll(SqlToPreparedStatementConverter.textWarnings(insert.getSql()));
+        }
+        SqlToPreparedStatementConverter.logWarnings(insert.getSql(),
+            converted.toBuilder().warnings(List.copyOf(warnings)).build());
+
+        return atomically(connection, () -> executeSplit(connection, insert, converted.getPreparedSql(),
+            first, statements, rowsPerStatement, options));
+    }
+
+    private static int executeSplit(Connection connection, MultiRowInsert insert, String template, ParameterBuffer first,
+                                    Iterator<ParameterBuffer> statements, int rowsPerStatement, BatchOptions options)
+            throws Exception {
+        long rows = 0;
+        var unknown = false;
+        ParameterBuffer remainder = null;
+
+        try (var pstmt = SqlToPreparedStatementConverter.prepareStatement(connection, template)) {
+            var batched = 0;
+            var params = first;
+            while (params != null) {
+                if (params.size() != rowsPerStatement * insert.getColumnCount()) {
+                    // Only the last statement can be short, and it needs its own template
+                    remainder = params;
+                    break;
+                }
+                SqlToPreparedStatementConverter.bindParameters(pstmt, template, params);
+                pstmt.addBatch();
+                if (++batched == options.getBatchSize()) {
+                    var counted = sumUpdateCounts(pstmt.executeBatch());
+                    rows += Math.max(counted, 0);
+                    unknown |= counted < 0;
+                    batched = 0;
+                }
+                params = statements.hasNext() ? statements.next() : null;
+            }
+            if (batched > 0) {
+                var counted = sumUpdateCounts(pstmt.executeBatch());
+                rows += Math.max(counted, 0);
+                unknown |= counted < 0;
+            }
+        }
+
+        if (remainder != null) {
+            // Same row shape as the first rows, so the converter gives the short statement's SQL too
+            var tailRows = remainder.size() / insert.getColumnCount();
+            var tailTemplate = SqlToPreparedStatementConverter.convertSqlToPrepared(insert.statement(tailRows)).getPreparedSql();
+            try (var pstmt = SqlToPreparedStatementConverter.prepareStatement(connection, tailTemplate)) {
+                SqlToPreparedStatementConverter.bindParameters(pstmt, tailTemplate, remainder);
+                rows += pstmt.executeUpdate();
+            }
+        }
+        log.debug("Inserted {} rows in statements of {}: {}", insert.getRowCount(), rowsPerStatement, template);
+        return unknown ? Statement.SUCCESS_NO_INFO : (int) Math.min(rows, Integer.MAX_VALUE);
+    }
+
+    private static int executeUnsplit(Connection connection, String sql) throws Exception {
+        var result = SqlToPreparedStatementConverter.convertSqlToPrepared(sql);
+        SqlToPreparedStatementConverter.logWarnings(sql, result);
+        try (var pstmt = SqlToPreparedStatementConverter.prepareStatement(connection, result.getPreparedSql())) {
+            SqlToPreparedStatementConverter.bindParameters(pstmt, result.getPreparedSql(), result.getParameterBuffer());
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Run the statements as one unit: in a transaction of their own under auto-commit, otherwise
+     * behind a savepoint in the caller's transaction when the driver supports savepoints
+     */
+    private static int atomically(Connection connection, InsertWork work) throws Exception {
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+            try {
+                var count = work.run();
+                connection.commit();
+                return count;
+            } catch (Exception e) {
+                rollback(connection, null, e);
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        Savepoint savepoint;
+        try {
+            savepoint = connection.setSavepoint();
+        } catch (SQLFeatureNotSupportedException e) {
+            log.debug("Savepoints not supported, the caller's transaction covers the split insert", e);
+            return work.run();
+        }
+        try {
+            var count = work.run();
+            release(connection, savepoint);
+            return count;
+        } catch (Exception e) {
+            rollback(connection, savepoint, e);
+            throw e;
+        }
+    }
+
+    private static void rollback(Connection connection, Savepoint savepoint, Exception failure) {
+        try {
+            if (savepoint == null) {
+                connection.rollback();
+            } else {
+                connection.rollback(savepoint);
+            }
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void release(Connection connection, Savepoint savepoint) {
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            // Some drivers do not release savepoints explicitly; the transaction's end does
+            log.debug("Savepoint release failed", e);
+        }
+    }
+
+    /**
+     * Total of a batch's update counts, or -1 when the driver did not report all of them
+     */
+    private static long sumUpdateCounts(int[] counts) {
+        long total = 0;
+        for (var count : counts) {
+            if (count < 0) {
+                return -1;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static void flushAll(Connection connection, LinkedHashMap<String, Group> groups,
+                                 UpdateCountListener listener) throws SQLException {
+        for (var group : groups.values()) {
+            flush(connection, group, listener);
+        }
+        groups.clear();
+    }
+
+    private static void flush(Connection connection, Group group, UpdateCountListener listener) throws SQLException {
+        try (var pstmt = SqlToPreparedStatementConverter.prepareStatement(connection, group.preparedSql)) {
+            for (var params : group.parameters) {
+                SqlToPreparedStatementConverter.bindParameters(pstmt, group.preparedSql, params);
+                pstmt.addBatch();
+            }
+
+            var counts = pstmt.executeBatch();
+            if (counts.length != group.indexes.size()) {
+                throw new SQLException(STR."Driver returned \{counts.length} update counts for a batch of \{group.indexes.size()}");
+            }
+            for (int i = 0; i < counts.length; i++) {
+                listener.onUpdateCount(group.indexes.get(i), counts[i]);
+            }
+        }
+        log.debug("Executed batch of {} for: {}", group.indexes.size(), group.preparedSql);
+    }
+}
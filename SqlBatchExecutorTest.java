@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlBatchExecutorTest {
+
+    private static final List<String> INTERLEAVED = List.of(
+        "UPDATE accounts SET balance = 10 WHERE id = 1",
+        "DELETE FROM accounts WHERE id = 1",
+        "UPDATE accounts SET balance = 20 WHERE id = 1");
+
+    // Every row sent to the database, as "prepared SQL parameters", and the size of each executeBatch
+    private final List<String> executed = new ArrayList<>();
+    private final List<Integer> batches = new ArrayList<>();
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+        new Class<?>[] { Connection.class }, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> statement((String) args[0]);
+            case "isClosed" -> false;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+
+    private PreparedStatement statement(String sql) {
+        var parameters = new TreeMap<Integer, Object>();
+        var batch = new ArrayList<Map<Integer, Object>>();
+        return (PreparedStatement) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+            new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> switch (method.getName()) {
+                case "setLong", "setString", "setDouble", "setObject" -> parameters.put((Integer) args[0], args[1]);
+                case "addBatch" -> batch.add(new TreeMap<>(parameters));
+                case "executeBatch" -> {
+                    for (var row : batch) {
+                        executed.add(sql + " " + row.values());
+                    }
+                    batches.add(batch.size());
+                    var counts = new int[batch.size()];
+                    Arrays.fill(counts, 1);
+                    batch.clear();
+                    yield counts;
+                }
+                case "clearParameters" -> {
+                    parameters.clear();
+                    yield null;
+                }
+                case "close" -> null;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    @Test
+    void interleavedTemplatesRunInInputOrderByDefault() throws Exception {
+        var counts = SqlBatchExecutor.executeBatch(connection, INTERLEAVED);
+
+        assertArrayEquals(new int[] { 1, 1, 1 }, counts);
+        assertEquals(List.of(
+            "UPDATE accounts SET balance = ? WHERE id = ? [10, 1]",
+            "DELETE FROM accounts WHERE id = ? [1]",
+            "UPDATE accounts SET balance = ? WHERE id = ? [20, 1]"), executed);
+        assertEquals(List.of(1, 1, 1), batches);
+    }
+
+    @Test
+    void consecutiveStatementsOfATemplateShareABatch() throws Exception {
+        SqlBatchExecutor.executeBatch(connection, List.of(
+            "UPDATE accounts SET balance = 10 WHERE id = 1",
+            "UPDATE accounts SET balance = 20 WHERE id = 2",
+            "DELETE FROM accounts WHERE id = 1"));
+
+        assertEquals(List.of(2, 1), batches);
+    }
+
+    @Test
+    void reorderingIsOptIn() throws Exception {
+        var options = SqlBatchExecutor.BatchOptions.builder().preserveOrder(false).build();
+        var counts = SqlBatchExecutor.executeBatch(connection, INTERLEAVED, options);
+
+        assertArrayEquals(new int[] { 1, 1, 1 }, counts);
+        assertEquals(List.of(
+            "UPDATE accounts SET balance = ? WHERE id = ? [10, 1]",
+            "UPDATE accounts SET balance = ? WHERE id = ? [20, 1]",
+            "DELETE FROM accounts WHERE id = ? [1]"), executed);
+        assertEquals(List.of(2, 1), batches);
+    }
+}
@@ -0,0 +1,167 @@
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Converts large SQL corpora (audits, migrations) in parallel.
+ * Every statement is converted independently, each worker building its own parser and
+ * deparser objects, and failures are captured per item instead of aborting the run.
+ * Results are handed to the sink on the calling thread, so sinks need not be thread-safe.
+ */
+@Slf4j
+public class SqlBulkConverter {
+
+    @Value
+    @Builder
+    public static class BulkOptions {
+        /** Number of statements converted concurrently */
+        @Builder.Default
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        /** Emit results in input order; unordered emits each result as soon as it is ready */
+        @Builder.Default
+        boolean ordered = true;
+        /** Run conversions on virtual threads instead of a dedicated fork-join pool */
+        @Builder.Default
+        boolean virtualThreads = false;
+        /** Look up and fill the exact-text conversion cache; corpora of mostly distinct SQL only churn it */
+        @Builder.Default
+        boolean useConversionCache = false;
+    }
+
+    @Value
+    public static class BulkItem {
+        long index;
+        String sql;
+        SqlToPreparedStatementConverter.ConversionResult result;
+        Throwable error;
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    @Value
+    public static class BulkReport {
+        long statements;
+        long errors;
+        Duration elapsed;
+
+        public double statementsPerSecond() {
+            var nanos = elapsed.toNanos();
+            return nanos == 0 ? 0.0 : statements * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements, %d errors in %d ms (%.0f statements/sec)",
+                statements, errors, elapsed.toMillis(), statementsPerSecond());
+        }
+    }
+
+    private SqlBulkConverter() {
+    }
+
+    public static BulkReport convert(Stream<String> sqls, Consumer<BulkItem> sink) throws InterruptedException {
+        return convert(sqls, BulkOptions.builder().build(), sink);
+    }
+
+    /**
+     * Convert every statement of the stream, passing one {@link BulkItem} per statement to the sink
+     */
+    public static BulkReport convert(Stream<String> sqls, BulkOptions options, Consumer<BulkItem> sink)
+            throws InterruptedException {
+        var parallelism = Math.max(1, options.getParallelism());
+        // Keep enough work queued to hide uneven statement cost without buffering the whole stream
+        var window = parallelism * 4;
+        var started = System.nanoTime();
+        long count = 0;
+        long errors = 0;
+
+        try (var executor = newExecutor(options, parallelism)) {
+            var concurrency = new Semaphore(parallelism);
+            var iterator = sqls.iterator();
+
+            if (options.isOrdered()) {
+                var inFlight = new ArrayDeque<Future<BulkItem>>(window);
+                while (iterator.hasNext()) {
+                    var index = count++;
+                    var sql = iterator.next();
+                    inFlight.add(executor.submit(() -> convertOne(index, sql, options, concurrency)));
+                    if (inFlight.size() >= window) {
+                        errors += emit(inFlight.poll(), sink);
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    errors += emit(inFlight.poll(), sink);
+                }
+            } else {
+                var completion = new ExecutorCompletionService<BulkItem>(executor);
+                var inFlight = 0;
+                while (iterator.hasNext()) {
+                    var index = count++;
+                    var sql = iterator.next();
+                    completion.submit(() -> convertOne(index, sql, options, concurrency));
+                    if (++inFlight >= window) {
+                        errors += emit(completion.take(), sink);
+                        inFlight--;
+                    }
+                }
+                for (; inFlight > 0; inFlight--) {
+                    errors += emit(completion.take(), sink);
+                }
+            }
+        }
+
+        var report = new BulkReport(count, errors, Duration.ofNanos(System.nanoTime() - started));
+        log.info("Bulk conversion finished: {}", report);
+        return report;
+    }
+
+    private static ExecutorService newExecutor(BulkOptions options, int parallelism) {
+        return options.isVirtualThreads()
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : new ForkJoinPool(parallelism);
+    }
+
+    private static BulkItem convertOne(long index, String sql, BulkOptions options, Semaphore concurrency)
+            throws InterruptedException {
+        concurrency.acquire();
+        try {
+            var result = options.isUseConversionCache()
+                ? SqlToPreparedStatementConverter.convertSqlToPrepared(sql)
+                : SqlToPreparedStatementConverter.convertUncached(sql);
+            return new BulkItem(index, sql, result, null);
+        } catch (Exception | StackOverflowError e) {
+            // Deeply nested SQL can exhaust the parser's stack; that is a per-item failure too
+            return new BulkItem(index, sql, null, e);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    /**
+     * Wait for the item and pass it on; returns 1 when it is a failure
+     */
+    private static int emit(Future<BulkItem> future, Consumer<BulkItem> sink) throws InterruptedException {
+        BulkItem item;
+        try {
+            item = future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bulk conversion task failed unexpectedly", e.getCause());
+        }
+        sink.accept(item);
+        return item.isSuccess() ? 0 : 1;
+    }
+}
@@ -0,0 +1,133 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage benchmarks of the conversion pipeline over the {@link BenchmarkSupport.Query} corpus.
+ * <p>
+ * Every stage is reported as throughput and as sampled latency (p50 to p99.99). main() adds the
+ * GC profiler for allocation per operation. Binding goes to a no-op PreparedStatement, so only
+ * the converter's side of it is measured.
+ * <p>
+ * Needs org.openjdk.jmh:jmh-core and jmh-generator-annprocess, plus JSqlParser and Lombok like the
+ * converter itself. Only one converter variant can be on the classpath, since they share a class
+ * name; this suite measures the JDK 21 one.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlConversionBenchmark {
+
+    /** Distinct literal variants per query, cycled so caches keyed on exact text see realistic reuse */
+    private static final int VARIANTS = 1_024;
+
+    @Param
+    BenchmarkSupport.Query query;
+
+    private String[] sqls;
+    private SqlToPreparedStatementConverter.ConversionResult converted;
+    private PreparedStatement statement;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder().build());
+        sqls = new String[VARIANTS];
+        for (int i = 0; i < VARIANTS; i++) {
+            sqls[i] = query.sql(i);
+            // Fill the exact-text and template caches so the cached stages measure hits
+            SqlToPreparedStatementConverter.convertSqlToPrepared(sqls[i]);
+        }
+        converted = SqlToPreparedStatementConverter.convertSqlToPrepared(sqls[0]);
+        statement = BenchmarkSupport.noOpPreparedStatement();
+    }
+
+    private String nextSql() {
+        next = (next + 1) & (VARIANTS - 1);
+        return sqls[next];
+    }
+
+    /**
+     * Text injection checks on their own
+     */
+    @Benchmark
+    public List<String> validateText() {
+        return SqlToPreparedStatementConverter.validateSqlForInjection(nextSql());
+    }
+
+    /**
+     * Full parse and deparse with text validation, no caches
+     */
+    @Benchmark
+    public SqlToPreparedStatementConverter.ConversionResult parseAndConvert() throws Exception {
+        return SqlToPreparedStatementConverter.parseAndConvert(nextSql(), SqlToPreparedStatementConverter.ValidationMode.TEXT);
+    }
+
+    /**
+     * Full parse and deparse with validation fused into the deparse pass, no caches
+     */
+    @Benchmark
+    public SqlToPreparedStatementConverter.ConversionResult parseAndConvertAst() throws Exception {
+        return SqlToPreparedStatementConverter.parseAndConvert(nextSql(), SqlToPreparedStatementConverter.ValidationMode.AST);
+    }
+
+    /**
+     * Literal scan plus template cache hit, skipping the parser
+     */
+    @Benchmark
+    public SqlToPreparedStatementConverter.ConversionResult templateHit() throws Exception {
+        return SqlToPreparedStatementConverter.convertUncached(nextSql());
+    }
+
+    /**
+     * Exact-text cache hit, the steady state for repeated statements
+     */
+    @Benchmark
+    public SqlToPreparedStatementConverter.ConversionResult exactCacheHit() throws Exception {
+        return SqlToPreparedStatementConverter.convertSqlToPrepared(nextSql());
+    }
+
+    /**
+     * Lexer-mode conversion without the parser
+     */
+    @Benchmark
+    public SqlLiteralScanner.Shape lex() {
+        return SqlLiteralScanner.scan(nextSql(), SqlDialect.ANSI, SqlLiteralScanner.Mode.LEXER);
+    }
+
+    /**
+     * Binding one converted statement through its binding plan
+     */
+    @Benchmark
+    public void bind() throws SQLException {
+        SqlToPreparedStatementConverter.bindParameters(statement, converted.getPreparedSql(), converted.getParameterBuffer());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder()
+            .include(SqlConversionBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
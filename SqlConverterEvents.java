@@ -0,0 +1,80 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events emitted by the converter.
+ * <p>
+ * Stack traces are off, so a committed event costs a few field writes; while the event type is
+ * disabled, begin/shouldCommit are all that runs. The thresholds below are defaults, override
+ * them in a .jfc settings file or on the recording, for example
+ * {@code recording.enable("sql.Conversion").withThreshold(Duration.ZERO)}.
+ * <p>
+ * The fingerprint is a hash of the prepared SQL, identical for all statements of one query
+ * shape, so a recording can group slow conversions by shape without holding the SQL text.
+ */
+public final class SqlConverterEvents {
+
+    private SqlConverterEvents() {
+    }
+
+    @Name("sql.Conversion")
+    @Label("SQL Conversion")
+    @Description("Conversion of literal SQL to a parameterized statement")
+    @Category({ "SQL", "Converter" })
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class ConversionEvent extends Event {
+        @Label("SQL Length")
+        int sqlLength;
+        @Label("Template Fingerprint")
+        String fingerprint;
+        @Label("Parameter Count")
+        int parameterCount;
+        @Label("Warning Count")
+        int warningCount;
+        @Label("Cache Hit")
+        boolean cacheHit;
+    }
+
+    @Name("sql.Validation")
+    @Label("SQL Injection Validation")
+    @Description("Text-based injection checks of one statement")
+    @Category({ "SQL", "Converter" })
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class ValidationEvent extends Event {
+        @Label("SQL Length")
+        int sqlLength;
+        @Label("Warning Count")
+        int warningCount;
+    }
+
+    @Name("sql.Prepare")
+    @Label("SQL Prepare")
+    @Description("Preparing and binding a converted statement")
+    @Category({ "SQL", "Converter" })
+    @StackTrace(false)
+    @Threshold("5 ms")
+    public static final class PrepareEvent extends Event {
+        @Label("SQL Length")
+        int sqlLength;
+        @Label("Template Fingerprint")
+        String fingerprint;
+        @Label("Parameter Count")
+        int parameterCount;
+        @Label("Warning Count")
+        int warningCount;
+    }
+
+    /**
+     * Short, stable identifier of a query shape
+     */
+    static String fingerprint(String preparedSql) {
+        return preparedSql == null ? null : Integer.toHexString(preparedSql.hashCode());
+    }
+}
@@ -0,0 +1,27 @@
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * SQL dialect traits that change how statements are tokenized or rewritten
+ */
+@Getter
+@RequiredArgsConstructor
+public enum SqlDialect {
+    ANSI(false, false, false, false, false, false),
+    MYSQL(true, true, true, false, false, false),
+    POSTGRESQL(false, false, false, false, true, true),
+    SQLSERVER(false, false, false, true, false, false);
+
+    /** Backslash escapes the next character inside string literals */
+    private final boolean backslashEscapes;
+    /** # starts a comment that runs to the end of the line */
+    private final boolean hashComments;
+    /** `name` quotes an identifier */
+    private final boolean backtickIdentifiers;
+    /** [name] quotes an identifier */
+    private final boolean bracketIdentifiers;
+    /** $tag$ ... $tag$ quotes a string body */
+    private final boolean dollarQuoting;
+    /** x = ANY(?) accepts a single array parameter */
+    private final boolean arrayParameters;
+}
@@ -0,0 +1,518 @@
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Single-pass SQL lexer that splits a statement into its literal-free template and the
+ * literal values, typed the way the converter's deparser types them (raw String, unboxed
+ * long and double, raw hex text, null). DATE, TIME and TIMESTAMP '...' literals stay in the
+ * template, as the deparser keeps them inline.
+ * <p>
+ * In {@link Mode#FINGERPRINT} mode the template is only used as a cache key and the parser
+ * cross-checks the first statement of every shape. In {@link Mode#LEXER} mode the template
+ * is used as the prepared SQL, so the scan gives up (returns null) on anything it cannot
+ * convert with certainty and the caller falls back to the parser.
+ */
+public final class SqlLiteralScanner {
+
+    public enum Mode { FINGERPRINT, LEXER }
+
+    @Value
+    public static class Shape {
+        /** SQL with literals replaced by ?, comments dropped and whitespace collapsed */
+        String template;
+        /** One code per literal: s string, l long, d double, h hex, n null, a IN-list array */
+        String typeSignature;
+        /** Literal values in order, frozen */
+        ParameterBuffer literals;
+
+        /**
+         * Key that is identical for statements differing only in literal values
+         */
+        public String getKey() {
+            return template + '\u0000' + typeSignature;
+        }
+    }
+
+    private static final Set<String> DML_KEYWORDS = Set.of("SELECT", "INSERT", "UPDATE", "DELETE", "WITH");
+
+    // Constructs whose literals the parser keeps inline or treats specially
+    private static final Set<String> LEXER_UNSUPPORTED_KEYWORDS = Set.of(
+        "CAST", "CONVERT", "INTERVAL", "FETCH", "ROWS", "TOP", "ESCAPE", "ZONE", "COLLATE");
+
+    private SqlLiteralScanner() {
+    }
+
+    /**
+     * Tokenize for use as a template cache key, or return null when the SQL contains syntax the scanner does not handle
+     */
+    public static Shape scan(String sql, SqlDialect dialect) {
+        return scan(sql, dialect, Mode.FINGERPRINT);
+    }
+
+    public static Shape scan(String sql, SqlDialect dialect, Mode mode) {
+        return scan(sql, dialect, mode, InListNormalization.NONE);
+    }
+
+    /**
+     * Scan with IN lists of literals rewritten the way the converter's deparser rewrites them, so
+     * lists of different lengths share one template
+     */
+    public static Shape scan(String sql, SqlDialect dialect, Mode mode, InListNormalization inLists) {
+        return scan(sql, dialect, mode, inLists, LiteralInliningPolicy.NONE);
+    }
+
+    /**
+     * Scan with LIMIT and OFFSET numbers the policy keeps left in the template, as the deparser
+     * leaves them. The lexer gives up on anything else the policy keeps, since only the parser
+     * can tell which literals those are.
+     */
+    public static Shape scan(String sql, SqlDialect dialect, Mode mode, InListNormalization inLists,
+                             LiteralInliningPolicy inlining) {
+        var strict = mode == Mode.LEXER;
+        if (strict && inlining.getMaxInlineCardinality() > 0) {
+            return null;
+        }
+        var inList = inLists == InListNormalization.NONE ? null : new InListTracker(inLists);
+        var length = sql.length();
+        var out = new StringBuilder(length);
+        var types = new StringBuilder();
+        var literals = new ParameterBuffer();
+        var pendingSpace = false;
+        var firstToken = true;
+        // The two previous words, to tell "IS [NOT] NULL" from a NULL literal
+        String lastWord = null;
+        String wordBefore = null;
+        // The LIMIT or OFFSET the next number belongs to, and whether a comma would start LIMIT's count
+        LiteralInliningPolicy.Clause limitClause = null;
+        var afterLimitNumber = false;
+        var i = 0;
+
+        while (i < length) {
+            var c = sql.charAt(i);
+            var next = i + 1 < length ? sql.charAt(i + 1) : '\0';
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+                i++;
+                continue;
+            }
+            if ((c == '-' && next == '-') || (c == '#' && dialect.isHashComments())) {
+                while (i < length && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') {
+                    i++;
+                }
+                pendingSpace = out.length() > 0;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                var end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return null;
+                }
+                i = end + 2;
+                pendingSpace = out.length() > 0;
+                continue;
+            }
+            if (c == ';') {
+                // A single trailing terminator is fine, anything after it is a stacked statement
+                if (skipWhitespace(sql, i + 1) < length) {
+                    return null;
+                }
+                break;
+            }
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+
+            var literalsBefore = literals.size();
+            if (isIdentifierStart(c)) {
+                var wordAt = out.length();
+                var start = i;
+                while (i < length && isIdentifierPart(sql.charAt(i))) {
+                    i++;
+                }
+                var word = sql.substring(start, i);
+                if (strict && (inlining.isInlineColumn(word) || isInlinedClause(word, lastWord, inlining))) {
+                    return null;
+                }
+
+                if (i < length && sql.charAt(i) == '\'') {
+                    // Prefixed string: X'..' is a hex literal, anything else (N'..', E'..') is only safe to key on
+                    if (word.equalsIgnoreCase("x")) {
+                        var end = endOfString(sql, i, dialect);
+                        if (end < 0) {
+                            return null;
+                        }
+                        addLiteral(out, types, literals, 'h', sql.substring(start, end + 1));
+                        i = end + 1;
+                    } else if (strict) {
+                        return null;
+                    } else {
+                        out.append(word);
+                    }
+                } else if (isTypedLiteralPrefix(word) && nextNonWhitespace(sql, i) == '\'') {
+                    var quote = skipWhitespace(sql, i);
+                    var end = endOfString(sql, quote, dialect);
+                    if (end < 0) {
+                        return null;
+                    }
+                    // The parser keeps DATE '..' inline, so the value stays in the template in both modes
+                    out.append(word).append(' ').append(sql, quote, end + 1);
+                    i = end + 1;
+                } else if (word.equalsIgnoreCase("NULL") && !followsIs(lastWord, wordBefore)) {
+                    addLiteral(out, types, literals, 'n', null);
+                } else {
+                    if (strict && (firstToken ? !DML_KEYWORDS.contains(word.toUpperCase())
+                            : LEXER_UNSUPPORTED_KEYWORDS.contains(word.toUpperCase()))) {
+                        return null;
+                    }
+                    out.append(word);
+                }
+                if (inList != null) {
+                    inList.word(word, wordAt, literals.size() != literalsBefore);
+                }
+                wordBefore = lastWord;
+                lastWord = word;
+                firstToken = false;
+                limitClause = word.equalsIgnoreCase("LIMIT") ? LiteralInliningPolicy.Clause.LIMIT
+                    : word.equalsIgnoreCase("OFFSET") ? LiteralInliningPolicy.Clause.OFFSET : null;
+                afterLimitNumber = false;
+                continue;
+            }
+
+            if (strict && firstToken) {
+                return null;
+            }
+            firstToken = false;
+            wordBefore = null;
+            lastWord = null;
+            var clause = limitClause;
+            var afterLimit = afterLimitNumber;
+            limitClause = null;
+            afterLimitNumber = false;
+
+            if (c == '\'') {
+                var end = endOfString(sql, i, dialect);
+                if (end < 0) {
+                    return null;
+                }
+                // Keep the raw content, escapes included, exactly like StringValue.getValue()
+                addLiteral(out, types, literals, 's', sql.substring(i + 1, end));
+                i = end + 1;
+            } else if (c == '"' || c == '`' || c == '[') {
+                if (strict && ((c == '`' && !dialect.isBacktickIdentifiers()) || (c == '[' && !dialect.isBracketIdentifiers()))) {
+                    return null;
+                }
+                // Quoted identifiers are copied verbatim, whitespace inside them is significant
+                var end = endOfQuoted(sql, i, c == '[' ? ']' : c);
+                if (end < 0) {
+                    return null;
+                }
+                out.append(sql, i, end + 1);
+                i = end + 1;
+            } else if (c == '0' && (next == 'x' || next == 'X') && i + 2 < length && isHexDigit(sql.charAt(i + 2))) {
+                var end = i + 2;
+                while (end < length && isHexDigit(sql.charAt(end))) {
+                    end++;
+                }
+                if (end < length && isIdentifierPart(sql.charAt(end))) {
+                    return null;
+                }
+                addLiteral(out, types, literals, 'h', sql.substring(i, end));
+                i = end;
+            } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+                if (i > 0 && isIdentifierPart(sql.charAt(i - 1))) {
+                    return null;
+                }
+                if (clause != null && inlining.inlines(clause)) {
+                    var end = endOfNumber(sql, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    out.append(sql, i, end);
+                    i = end;
+                } else {
+                    i = scanNumber(sql, i, out, types, literals);
+                    if (i < 0) {
+                        return null;
+                    }
+                }
+                afterLimitNumber = clause == LiteralInliningPolicy.Clause.LIMIT;
+            } else if (c == ',' && afterLimit) {
+                // LIMIT offset, count: the number taken for the count was the offset
+                if (strict && inlining.inlines(LiteralInliningPolicy.Clause.LIMIT) != inlining.inlines(LiteralInliningPolicy.Clause.OFFSET)) {
+                    return null;
+                }
+                out.append(c);
+                i++;
+                limitClause = LiteralInliningPolicy.Clause.LIMIT;
+            } else if (isUnsupported(c, next, strict)) {
+                return null;
+            } else if (c == ')' && inList != null && inList.isAtEnd()) {
+                inList.rewrite(out, types, literals);
+                i++;
+            } else {
+                out.append(c);
+                i++;
+            }
+            if (inList != null) {
+                inList.token(c, literals.size() != literalsBefore, literals.size(), types.length());
+            }
+        }
+
+        if (strict && firstToken) {
+            return null;
+        }
+        return new Shape(out.toString(), types.toString(), literals.freeze());
+    }
+
+    /**
+     * Follows "[NOT] IN (literal, ...)" token by token and rewrites the list at its closing parenthesis
+     */
+    private static final class InListTracker {
+        private static final int NONE = 0;
+        private static final int AFTER_IN = 1;
+        private static final int EXPECT_VALUE = 2;
+        private static final int AFTER_VALUE = 3;
+
+        private final InListNormalization normalization;
+        private int state = NONE;
+        private String previousWord;
+        private int previousWordAt;
+        // Where the rewrite starts in the template, and where the list starts in the literals and types
+        private int keywordAt;
+        private boolean negated;
+        private int firstLiteral;
+        private int firstType;
+
+        InListTracker(InListNormalization normalization) {
+            this.normalization = normalization;
+        }
+
+        void word(String word, int wordAt, boolean literal) {
+            if (literal) {
+                value();
+            } else if (word.equalsIgnoreCase("IN")) {
+                state = AFTER_IN;
+                negated = previousWord != null && previousWord.equalsIgnoreCase("NOT");
+                keywordAt = negated ? previousWordAt : wordAt;
+            } else {
+                state = NONE;
+            }
+            previousWord = literal ? null : word;
+            previousWordAt = wordAt;
+        }
+
+        void token(char c, boolean literal, int literalCount, int typeCount) {
+            previousWord = null;
+            if (literal) {
+                value();
+            } else if (c == '(' && state == AFTER_IN) {
+                state = EXPECT_VALUE;
+                firstLiteral = literalCount;
+                firstType = typeCount;
+            } else {
+                state = c == ',' && state == AFTER_VALUE ? EXPECT_VALUE : NONE;
+            }
+        }
+
+        private void value() {
+            state = state == EXPECT_VALUE ? AFTER_VALUE : NONE;
+        }
+
+        boolean isAtEnd() {
+            return state == AFTER_VALUE;
+        }
+
+        void rewrite(StringBuilder out, StringBuilder types, ParameterBuffer literals) {
+            out.setLength(keywordAt);
+            out.append(normalization.normalize(literals, firstLiteral, negated));
+            if (literals.size() == firstLiteral + 1 && literals.getType(firstLiteral) == ParameterBuffer.ARRAY) {
+                types.setLength(firstType);
+                types.append('a');
+            } else {
+                // Padding repeats the last value, so it repeats its type code too
+                var lastType = types.charAt(types.length() - 1);
+                while (types.length() - firstType < literals.size() - firstLiteral) {
+                    types.append(lastType);
+                }
+            }
+            state = NONE;
+        }
+    }
+
+    private static void addLiteral(StringBuilder out, StringBuilder types, ParameterBuffer literals, char type, Object value) {
+        addPlaceholder(out, types, type);
+        literals.add(value);
+    }
+
+    private static void addPlaceholder(StringBuilder out, StringBuilder types, char type) {
+        out.append('?');
+        types.append(type);
+    }
+
+    /**
+     * Index of the closing quote of a string literal, honouring doubled quotes and, where the dialect has them, backslash escapes
+     */
+    static int endOfString(String sql, int start, SqlDialect dialect) {
+        if (!dialect.isBackslashEscapes()) {
+            return endOfQuoted(sql, start, '\'');
+        }
+        var i = start + 1;
+        while (i < sql.length()) {
+            var c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the closing quote, treating a doubled quote as an escaped one; -1 if unterminated
+     */
+    static int endOfQuoted(String sql, int start, char quote) {
+        var i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Scan a numeric literal and record its value; returns the index after it, or -1 if it is not a plain number
+     */
+    private static int scanNumber(String sql, int start, StringBuilder out, StringBuilder types, ParameterBuffer literals) {
+        var end = endOfNumber(sql, start);
+        if (end < 0 || !addNumber(sql.substring(start, end), literals)) {
+            return -1;
+        }
+        addPlaceholder(out, types, literals.getType(literals.size() - 1) == ParameterBuffer.DOUBLE ? 'd' : 'l');
+        return end;
+    }
+
+    /**
+     * Index after the unsigned numeric literal starting at start, or -1 if the text there is not a plain number
+     */
+    static int endOfNumber(String sql, int start) {
+        var length = sql.length();
+        var i = start;
+
+        while (i < length && isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i < length && sql.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (sql.charAt(i) == '+' || sql.charAt(i) == '-')) {
+                i++;
+            }
+            var exponentStart = i;
+            while (i < length && isDigit(sql.charAt(i))) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return -1;
+            }
+        }
+        if (i < length && (isIdentifierPart(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            return -1;
+        }
+        return i;
+    }
+
+    /**
+     * Add a numeric literal as a long, or as a double when it has a fraction or exponent; false if it does not fit
+     */
+    static boolean addNumber(String text, ParameterBuffer literals) {
+        try {
+            if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                literals.addDouble(Double.parseDouble(text));
+            } else {
+                literals.addLong(Long.parseLong(text));
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isTypedLiteralPrefix(String word) {
+        return word.equalsIgnoreCase("DATE") || word.equalsIgnoreCase("TIME") || word.equalsIgnoreCase("TIMESTAMP");
+    }
+
+    /**
+     * Whether the word opens an ORDER BY or GROUP BY whose literals the policy keeps
+     */
+    private static boolean isInlinedClause(String word, String lastWord, LiteralInliningPolicy inlining) {
+        if (lastWord == null || !word.equalsIgnoreCase("BY")) {
+            return false;
+        }
+        return (lastWord.equalsIgnoreCase("ORDER") && inlining.inlines(LiteralInliningPolicy.Clause.ORDER_BY))
+            || (lastWord.equalsIgnoreCase("GROUP") && inlining.inlines(LiteralInliningPolicy.Clause.GROUP_BY));
+    }
+
+    private static boolean followsIs(String lastWord, String wordBefore) {
+        return lastWord != null && (lastWord.equalsIgnoreCase("IS")
+            || (lastWord.equalsIgnoreCase("NOT") && wordBefore != null && wordBefore.equalsIgnoreCase("IS")));
+    }
+
+    private static boolean isUnsupported(char c, char next, boolean strict) {
+        return switch (c) {
+            case '?', ':', '$', '{', '}', '#', '\\' -> true;
+            // JSON operators carry keys the parser keeps inline
+            case '-' -> strict && next == '>';
+            default -> false;
+        };
+    }
+
+    private static int skipWhitespace(String sql, int i) {
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static char nextNonWhitespace(String sql, int i) {
+        var index = skipWhitespace(sql, i);
+        return index < sql.length() ? sql.charAt(index) : '\0';
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,13 @@
+import net.sf.jsqlparser.JSQLParserException;
+
+/**
+ * A statement that parsed but was refused by an injection check, such as stacked statements under
+ * AST validation. Unlike a parse failure it is never bypassed, whatever the parse failure policy,
+ * and never remembered in the parse guard's negative cache.
+ */
+public class SqlRejectedException extends JSQLParserException {
+
+    public SqlRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,372 @@
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a literal-laden query through {@link SqlToPreparedStatementConverter#createPreparedStatement}
+ * and hands out its rows lazily, as a {@link Stream} or as a {@link Flow.Publisher}.
+ * <p>
+ * Rows are mapped one at a time as they are consumed, and the driver is asked to fetch them
+ * {@code fetchSize} at a time, so exporting millions of rows runs in constant memory. Statements are
+ * prepared forward-only and read-only, the JDBC defaults drivers need to stream. Some drivers add
+ * conditions of their own: PostgreSQL only honours the fetch size with auto-commit off (see
+ * {@link StreamOptions#isDisableAutoCommit()}), MySQL only streams with a fetch size of
+ * {@link Integer#MIN_VALUE}.
+ * <p>
+ * Closing the stream, or cancelling the subscription, closes the ResultSet and the statement,
+ * and the connection when it was taken from a DataSource. Use streams in try-with-resources.
+ */
+@Slf4j
+public final class SqlRowStream {
+
+    @Value
+    @Builder
+    public static class StreamOptions {
+        /** Rows the driver fetches per round trip */
+        @Builder.Default
+        int fetchSize = 1_000;
+        /**
+         * Turn auto-commit off while rows are read from a connection taken from a DataSource,
+         * restoring it on close; PostgreSQL ignores the fetch size otherwise
+         */
+        @Builder.Default
+        boolean disableAutoCommit = false;
+    }
+
+    /**
+     * SQLException thrown while a stream was consumed
+     */
+    public static final class UncheckedSQLException extends RuntimeException {
+        public UncheckedSQLException(SQLException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private static final Executor VIRTUAL_THREADS = task -> Thread.ofVirtual().name("sql-row-publisher").start(task);
+
+    private SqlRowStream() {
+    }
+
+    /**
+     * Stream the rows of the query on a connection owned by the caller, which stays open
+     */
+    public static <T> Stream<T> stream(Connection connection, String sql, RowMapper<T> rowMapper,
+                                       StreamOptions options) throws Exception {
+        return stream(Cursor.open(connection, false, sql, rowMapper, options));
+    }
+
+    /**
+     * Stream the rows of the query on a connection of its own, closed with the stream
+     */
+    public static <T> Stream<T> stream(DataSource dataSource, String sql, RowMapper<T> rowMapper,
+                                       StreamOptions options) throws Exception {
+        return stream(Cursor.open(dataSource.getConnection(), true, sql, rowMapper, options));
+    }
+
+    private static <T> Stream<T> stream(Cursor<T> cursor) {
+        var rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    return cursor.tryAdvance(action);
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                cursor.close();
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    /**
+     * Publisher running the query once per subscriber, on a virtual thread each
+     */
+    public static <T> Flow.Publisher<T> publisher(DataSource dataSource, String sql, RowMapper<T> rowMapper,
+                                                  StreamOptions options) {
+        return publisher(dataSource, sql, rowMapper, options, VIRTUAL_THREADS);
+    }
+
+    /**
+     * Publisher running the query once per subscriber. Nothing is executed before the first
+     * request, and rows are only read from the ResultSet as the subscriber requests them.
+     */
+    public static <T> Flow.Publisher<T> publisher(DataSource dataSource, String sql, RowMapper<T> rowMapper,
+                                                  StreamOptions options, Executor executor) {
+        return subscriber -> subscriber.onSubscribe(
+            new RowSubscription<>(dataSource, sql, rowMapper, options, executor, subscriber));
+    }
+
+    /**
+     * An open statement and ResultSet, mapping one row per advance
+     */
+    private static final class Cursor<T> implements AutoCloseable {
+        private final Connection connection;
+        private final boolean ownsConnection;
+        private final RowMapper<T> rowMapper;
+        private boolean restoreAutoCommit;
+        private PreparedStatement pstmt;
+        private int previousFetchSize;
+        private ResultSet resultSet;
+        private int rowNumber;
+        private boolean closed;
+
+        private Cursor(Connection connection, boolean ownsConnection, RowMapper<T> rowMapper) {
+            this.connection = connection;
+            this.ownsConnection = ownsConnection;
+            this.rowMapper = rowMapper;
+        }
+
+        static <T> Cursor<T> open(Connection connection, boolean ownsConnection, String sql, RowMapper<T> rowMapper,
+                                  StreamOptions options) throws Exception {
+            var cursor = new Cursor<>(connection, ownsConnection, rowMapper);
+            try {
+                if (ownsConnection && options.isDisableAutoCommit() && connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                    cursor.restoreAutoCommit = true;
+                }
+                cursor.pstmt = SqlToPreparedStatementConverter.createPreparedStatement(connection, sql);
+                // Cached statements outlive the stream; put their fetch size back on close
+                cursor.previousFetchSize = cursor.pstmt.getFetchSize();
+                cursor.pstmt.setFetchSize(options.getFetchSize());
+                cursor.resultSet = cursor.pstmt.executeQuery();
+                return cursor;
+            } catch (Exception e) {
+                try {
+                    cursor.close();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Map the next row into the action; false once the rows are exhausted, which also releases them
+         */
+        boolean tryAdvance(Consumer<? super T> action) throws SQLException {
+            if (closed) {
+                return false;
+            }
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(rowMapper.mapRow(resultSet, rowNumber++));
+            return true;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            SQLException failure = null;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+            } catch (SQLException e) {
+                failure = e;
+            }
+            try {
+                if (pstmt != null) {
+                    pstmt.setFetchSize(previousFetchSize);
+                    pstmt.close();
+                }
+            } catch (SQLException e) {
+                failure = chain(failure, e);
+            }
+            if (ownsConnection) {
+                try {
+                    if (restoreAutoCommit) {
+                        // Only read; nothing to commit
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
+                } catch (SQLException e) {
+                    failure = chain(failure, e);
+                }
+                try {
+                    SqlToPreparedStatementConverter.closeCachedStatements(connection);
+                    connection.close();
+                } catch (SQLException e) {
+                    failure = chain(failure, e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private static SQLException chain(SQLException first, SQLException next) {
+            if (first == null) {
+                return next;
+            }
+            first.addSuppressed(next);
+            return first;
+        }
+    }
+
+    /**
+     * One subscriber's query. Demand is drained by a single task at a time on the executor, so the
+     * ResultSet is only ever touched by one thread and signals are never concurrent.
+     */
+    private static final class RowSubscription<T> implements Flow.Subscription, Runnable {
+        private final DataSource dataSource;
+        private final String sql;
+        private final RowMapper<T> rowMapper;
+        private final StreamOptions options;
+        private final Executor executor;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        // Only touched by the draining task
+        private Cursor<T> cursor;
+        private boolean done;
+
+        RowSubscription(DataSource dataSource, String sql, RowMapper<T> rowMapper, StreamOptions options,
+                        Executor executor, Flow.Subscriber<? super T> subscriber) {
+            this.dataSource = dataSource;
+            this.sql = sql;
+            this.rowMapper = rowMapper;
+            this.options = options;
+            this.executor = executor;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(STR."Requested \{n} rows, the count must be positive");
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pendingDrains.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Holding the drain, so nothing else is signalling
+                fail(e);
+                pendingDrains.set(0);
+            }
+        }
+
+        @Override
+        public void run() {
+            var missed = 1;
+            do {
+                if (!done) {
+                    drain();
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (cancelled) {
+                done = true;
+                closeQuietly();
+                return;
+            }
+            if (invalidRequest != null) {
+                fail(invalidRequest);
+                return;
+            }
+            try {
+                var requested = demand.get();
+                if (requested == 0) {
+                    return;
+                }
+                if (cursor == null) {
+                    cursor = Cursor.open(dataSource.getConnection(), true, sql, rowMapper, options);
+                }
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (cancelled) {
+                        done = true;
+                        closeQuietly();
+                        return;
+                    }
+                    if (!cursor.tryAdvance(subscriber::onNext)) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    emitted++;
+                }
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                // More demand that arrived meanwhile was scheduled by request()
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable failure) {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (SQLException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            subscriber.onError(failure);
+        }
+
+        private void closeQuietly() {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (SQLException e) {
+                    log.debug("Failed to close cancelled row publisher", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams a .sql script or log through the converter one statement at a time.
+ * <p>
+ * The file is read in fixed-size chunks and split on ; outside of quotes, comments and
+ * dollar-quoted bodies, so heap use is bounded by the read buffer and the largest single
+ * statement, never by the file size. Every statement is emitted as a {@link ScriptRecord}
+ * carrying its byte range; passing a record's end offset back as the start offset resumes
+ * the script right after that statement.
+ * <p>
+ * Splitting works on bytes, which is exact for UTF-8 and other ASCII-compatible charsets.
+ */
+@Slf4j
+public class SqlScriptConverter {
+
+    @Value
+    @Builder
+    public static class ScriptOptions {
+        /** Quoting and comment rules used to find statement boundaries */
+        @Builder.Default
+        SqlDialect dialect = SqlDialect.ANSI;
+        @Builder.Default
+        Charset charset = StandardCharsets.UTF_8;
+        @Builder.Default
+        int readBufferSize = 1 << 20;
+        /** Statements longer than this are skipped and reported as failed records */
+        @Builder.Default
+        int maxStatementBytes = 64 << 20;
+    }
+
+    @Value
+    public static class ScriptRecord {
+        /** Byte offset of the first byte of the statement */
+        long startOffset;
+        /** Byte offset just past the statement terminator; resume from here */
+        long endOffset;
+        String template;
+        List<Object> parameters;
+        List<String> warnings;
+        Throwable error;
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ScriptSink {
+        void accept(ScriptRecord record) throws Exception;
+    }
+
+    private enum State { NORMAL, SINGLE_QUOTE, DOUBLE_QUOTE, BACKTICK, LINE_COMMENT, BLOCK_COMMENT, DOLLAR_TAG, DOLLAR_QUOTE }
+
+    private SqlScriptConverter() {
+    }
+
+    public static long convert(Path script, ScriptSink sink) throws Exception {
+        return convert(script, 0, ScriptOptions.builder().build(), sink);
+    }
+
+    /**
+     * Convert every statement from startOffset to the end of the file.
+     *
+     * @param startOffset 0, or the end offset of a previously emitted record
+     * @return the offset just past the last emitted statement
+     */
+    public static long convert(Path script, long startOffset, ScriptOptions options, ScriptSink sink) throws Exception {
+        var splitter = new Splitter(options, sink, startOffset);
+        try (var channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            channel.position(startOffset);
+            var buffer = ByteBuffer.allocate(options.getReadBufferSize());
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                splitter.feed(buffer.array(), buffer.limit());
+                buffer.clear();
+            }
+        }
+        splitter.finish();
+        return splitter.resumeOffset;
+    }
+
+    /**
+     * Byte-level statement splitter; all delimiters are ASCII, which never occur inside UTF-8 multi-byte sequences
+     */
+    private static final class Splitter {
+        final ScriptOptions options;
+        final SqlDialect dialect;
+        final ScriptSink sink;
+
+        byte[] statement = new byte[8192];
+        int length;
+        boolean oversized;
+        boolean hasContent;
+        long statementStart;
+        long position;
+        long resumeOffset;
+
+        State state = State.NORMAL;
+        byte previous;
+        boolean escaped;
+        // Dollar-quote tag being read, and how much of the closing $tag$ has been seen
+        byte[] dollarTag = new byte[64];
+        int dollarTagLength;
+        int closingMatched;
+
+        Splitter(ScriptOptions options, ScriptSink sink, long startOffset) {
+            this.options = options;
+            this.dialect = options.getDialect();
+            this.sink = sink;
+            this.statementStart = startOffset;
+            this.position = startOffset;
+            this.resumeOffset = startOffset;
+        }
+
+        void feed(byte[] bytes, int count) throws Exception {
+            for (int i = 0; i < count; i++) {
+                var b = bytes[i];
+                position++;
+                if (state == State.DOLLAR_TAG && b != '$' && !isIdentifierByte(b)) {
+                    // $ not followed by a tag, not a dollar quote
+                    state = State.NORMAL;
+                }
+                if (state == State.NORMAL && b == ';') {
+                    emit(position);
+                    continue;
+                }
+                append(b);
+                advance(b);
+            }
+        }
+
+        void finish() throws Exception {
+            emit(position);
+        }
+
+        private void advance(byte b) {
+            switch (state) {
+                case NORMAL -> {
+                    if (b == '\'') {
+                        enter(State.SINGLE_QUOTE);
+                    } else if (b == '"') {
+                        enter(State.DOUBLE_QUOTE);
+                    } else if (b == '`' && dialect.isBacktickIdentifiers()) {
+                        enter(State.BACKTICK);
+                    } else if (b == '-' && previous == '-') {
+                        state = State.LINE_COMMENT;
+                    } else if (b == '*' && previous == '/') {
+                        state = State.BLOCK_COMMENT;
+                        b = 0;
+                    } else if (b == '#' && dialect.isHashComments()) {
+                        state = State.LINE_COMMENT;
+                    } else if (b == '$' && dialect.isDollarQuoting() && !isIdentifierByte(previous)) {
+                        state = State.DOLLAR_TAG;
+                        dollarTagLength = 0;
+                        hasContent = true;
+                    } else if (!isWhitespace(b) && b != '-' && b != '/') {
+                        hasContent = true;
+                    }
+                }
+                case SINGLE_QUOTE, DOUBLE_QUOTE, BACKTICK -> {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\' && dialect.isBackslashEscapes()) {
+                        escaped = true;
+                    } else if (b == closingQuote()) {
+                        // A doubled quote just re-enters the same state on the next byte
+                        state = State.NORMAL;
+                        b = 0;
+                    }
+                }
+                case LINE_COMMENT -> {
+                    if (b == '\n' || b == '\r') {
+                        state = State.NORMAL;
+                    }
+                }
+                case BLOCK_COMMENT -> {
+                    if (b == '/' && previous == '*') {
+                        state = State.NORMAL;
+                        b = 0;
+                    }
+                }
+                case DOLLAR_TAG -> {
+                    if (b == '$') {
+                        state = State.DOLLAR_QUOTE;
+                        closingMatched = 0;
+                    } else if (!(dollarTagLength == 0 && b >= '0' && b <= '9') && dollarTagLength < dollarTag.length) {
+                        dollarTag[dollarTagLength++] = b;
+                    } else {
+                        // $1 style placeholder, not a dollar quote
+                        state = State.NORMAL;
+                    }
+                }
+                case DOLLAR_QUOTE -> {
+                    // Closing delimiter is $tag$; the tag never contains $, so a mismatch restarts cleanly
+                    var expected = closingMatched == 0 || closingMatched == dollarTagLength + 1
+                        ? (byte) '$' : dollarTag[closingMatched - 1];
+                    if (b == expected) {
+                        closingMatched++;
+                        if (closingMatched == dollarTagLength + 2) {
+                            state = State.NORMAL;
+                            b = 0;
+                        }
+                    } else {
+                        closingMatched = b == '$' ? 1 : 0;
+                    }
+                }
+            }
+            previous = b;
+        }
+
+        private void enter(State quoted) {
+            state = quoted;
+            hasContent = true;
+            escaped = false;
+        }
+
+        private byte closingQuote() {
+            return switch (state) {
+                case SINGLE_QUOTE -> '\'';
+                case DOUBLE_QUOTE -> '"';
+                default -> '`';
+            };
+        }
+
+        private void append(byte b) {
+            if (oversized) {
+                return;
+            }
+            if (length == statement.length) {
+                if (length >= options.getMaxStatementBytes()) {
+                    oversized = true;
+                    return;
+                }
+                statement = Arrays.copyOf(statement, (int) Math.min((long) length * 2, options.getMaxStatementBytes()));
+            }
+            statement[length++] = b;
+        }
+
+        private void emit(long endOffset) throws Exception {
+            if (hasContent) {
+                sink.accept(convert(endOffset));
+            }
+            resumeOffset = endOffset;
+            statementStart = endOffset;
+            length = 0;
+            oversized = false;
+            hasContent = false;
+            previous = 0;
+            // Give back the memory of an unusually large statement
+            if (statement.length > (1 << 20)) {
+                statement = new byte[8192];
+            }
+        }
+
+        private ScriptRecord convert(long endOffset) {
+            if (oversized) {
+                var error = new IllegalStateException(STR."Statement exceeds \{options.getMaxStatementBytes()} bytes");
+                return new ScriptRecord(statementStart, endOffset, null, null, null, error);
+            }
+            var sql = new String(statement, 0, length, options.getCharset());
+            try {
+                var result = SqlToPreparedStatementConverter.convertUncached(sql);
+                return new ScriptRecord(statementStart, endOffset, result.getPreparedSql(),
+                    result.getParameters(), result.getWarnings(), null);
+            } catch (Exception | StackOverflowError e) {
+                log.debug("Failed to convert statement at offset {}", statementStart, e);
+                return new ScriptRecord(statementStart, endOffset, null, null, null, e);
+            }
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+        }
+
+        private static boolean isIdentifierByte(byte b) {
+            return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b < 0;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SqlToPreparedStatementConverterTest {
+
+    @AfterEach
+    void restoreDefaults() {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder().build());
+    }
+
+    @Test
+    void stackedStatementsAreRejectedEvenUnderBypass() {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder()
+            .validationMode(SqlToPreparedStatementConverter.ValidationMode.AST)
+            .parseFailurePolicy(ParseGuard.FailurePolicy.BYPASS)
+            .build());
+
+        assertThrows(SqlRejectedException.class,
+            () -> SqlToPreparedStatementConverter.convertSqlToPrepared("SELECT 1; DROP TABLE users"));
+        // Not remembered by the negative cache as a bypassable failure either
+        assertThrows(SqlRejectedException.class,
+            () -> SqlToPreparedStatementConverter.convertSqlToPrepared("SELECT 1; DROP TABLE users"));
+    }
+
+    @Test
+    void stackedStatementsAreRejectedUnderBypassWithAParseBudget() {
+        SqlToPreparedStatementConverter.configure(SqlToPreparedStatementConverter.ConverterConfig.builder()
+            .validationMode(SqlToPreparedStatementConverter.ValidationMode.AST)
+            .parseFailurePolicy(ParseGuard.FailurePolicy.BYPASS)
+            .parseTimeout(Duration.ofSeconds(5))
+            .build());
+
+        assertThrows(SqlRejectedException.class,
+            () -> SqlToPreparedStatementConverter.convertSqlToPrepared("SELECT * FROM users WHERE id = 1; DELETE FROM users"));
+    }
+}
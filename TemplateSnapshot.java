@@ -0,0 +1,262 @@
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The converter's known statement shapes, persisted so a new process starts with warm caches.
+ * <p>
+ * A snapshot holds, per shape, the template cache key (literal-free SQL plus the literal type
+ * signature), the prepared SQL and any structural warnings, in a small gzip'd binary file. It is
+ * stamped with a signature of the settings that produced it; a snapshot written under other
+ * settings or another parser version is ignored. The signature only detects changed settings, it
+ * is no integrity check: anyone who can write the file can put any SQL in it, so the warm-up action
+ * must verify every entry before using it.
+ * <p>
+ * An instance owns one snapshot file: on creation it loads the file on a background thread and
+ * hands the entries, in file order, to a warm-up action, then rewrites the file at a fixed interval, if any, and
+ * at JVM shutdown. Files are replaced atomically, so a crash mid-write leaves the previous snapshot.
+ */
+@Slf4j
+public class TemplateSnapshot implements AutoCloseable {
+
+    @Value
+    public static class Entry {
+        /** Template cache key: SQL with literals replaced by ?, a NUL, then one type code per literal */
+        String shapeKey;
+        String preparedSql;
+        /** Structural warnings shared by the shape, or null when the text checks run per statement; informational, warm-up derives them again */
+        List<String> warnings;
+
+        /**
+         * One code per parameter, as in {@link SqlLiteralScanner.Shape#getTypeSignature()}
+         */
+        public String getTypeSignature() {
+            return shapeKey.substring(shapeKey.lastIndexOf('\u0000') + 1);
+        }
+    }
+
+    private static final int MAGIC = 0x53514C54;
+    private static final int VERSION = 1;
+    // Guards against allocating for a corrupt length
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final long signature;
+    private final Supplier<List<Entry>> source;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Thread shutdownHook;
+    private final CompletableFuture<Integer> warmUp;
+
+    /**
+     * @param signature stamp of the settings entries are valid for, see {@link #signature(String...)}
+     * @param interval  how often the snapshot is rewritten, or null to only write it at shutdown and close
+     * @param source    the entries to save, read on the snapshot thread
+     * @param warmUp    receives the loaded entries on the snapshot thread and returns how many it used;
+     *                  not called when there are none
+     */
+    public TemplateSnapshot(Path path, long signature, Duration interval, Supplier<List<Entry>> source,
+                            ToIntFunction<List<Entry>> warmUp) {
+        this.path = path;
+        this.signature = signature;
+        this.source = source;
+        this.executor = new ScheduledThreadPoolExecutor(1, task -> {
+            var thread = new Thread(task, "sql-template-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.warmUp = CompletableFuture.supplyAsync(() -> {
+            var started = System.nanoTime();
+            var entries = readQuietly();
+            if (entries.isEmpty()) {
+                return 0;
+            }
+            var loaded = warmUp.applyAsInt(entries);
+            log.info("Warmed up {} templates from {} in {} ms", loaded, path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return loaded;
+        }, executor);
+        if (interval != null) {
+            var millis = interval.toMillis();
+            executor.scheduleWithFixedDelay(this::saveQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        this.shutdownHook = new Thread(this::saveQuietly, "sql-template-snapshot-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Completes with the number of templates loaded once warm-up is over, e.g. for a readiness check;
+     * cancelled when the snapshot is closed first
+     */
+    public CompletableFuture<Integer> getWarmUp() {
+        return warmUp.copy();
+    }
+
+    /**
+     * Write the current entries; an empty set never replaces an existing snapshot
+     */
+    public synchronized int save() throws IOException {
+        var entries = source.get();
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        write(path, signature, entries);
+        log.debug("Saved {} templates to {}", entries.size(), path);
+        return entries.size();
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save template snapshot to {}", path, e);
+        }
+    }
+
+    private List<Entry> readQuietly() {
+        try {
+            return read(path, signature);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable template snapshot {}", path, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Stop the snapshot thread, interrupting a warm-up still running, and save a last time
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        // A warm-up that never started would otherwise leave the future pending forever
+        warmUp.cancel(false);
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down: the hook saves
+            return;
+        }
+        saveQuietly();
+    }
+
+    /**
+     * Stable stamp of the given settings; enum names rather than hash codes, which change per JVM
+     */
+    public static long signature(String... settings) {
+        var fnv = 0xcbf29ce484222325L;
+        for (var setting : settings) {
+            for (var b : String.valueOf(setting).getBytes(StandardCharsets.UTF_8)) {
+                fnv = (fnv ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            fnv = (fnv ^ 0xff) * 0x100000001b3L;
+        }
+        return fnv;
+    }
+
+    public static void write(Path path, long signature, Collection<Entry> entries) throws IOException {
+        var directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        var temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(signature);
+                out.writeInt(entries.size());
+                for (var entry : entries) {
+                    writeString(out, entry.getShapeKey());
+                    writeString(out, entry.getPreparedSql());
+                    var warnings = entry.getWarnings();
+                    out.writeInt(warnings == null ? -1 : warnings.size());
+                    if (warnings != null) {
+                        for (var warning : warnings) {
+                            writeString(out, warning);
+                        }
+                    }
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Entries of the snapshot, or an empty list when there is none or it was written under another signature
+     */
+    public static List<Entry> read(Path path, long signature) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a template snapshot");
+            }
+            var version = in.readInt();
+            var written = in.readLong();
+            if (version != VERSION || written != signature) {
+                log.info("Ignoring template snapshot {} written with other settings", path);
+                return List.of();
+            }
+            var count = in.readInt();
+            var entries = new ArrayList<Entry>(Math.min(Math.max(count, 0), 100_000));
+            for (int i = 0; i < count; i++) {
+                var shapeKey = readString(in);
+                var preparedSql = readString(in);
+                var warningCount = in.readInt();
+                List<String> warnings = null;
+                if (warningCount >= 0) {
+                    var list = new ArrayList<String>(Math.min(warningCount, 64));
+                    for (int w = 0; w < warningCount; w++) {
+                        list.add(readString(in));
+                    }
+                    warnings = Collections.unmodifiableList(list);
+                }
+                entries.add(new Entry(shapeKey, preparedSql, warnings));
+            }
+            return entries;
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+
+    // Length-prefixed UTF-8; writeUTF stops at 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException(STR."Corrupt template snapshot, string of \{length} bytes");
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
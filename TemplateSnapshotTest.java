@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateSnapshotTest {
+
+    @Test
+    void closeDuringWarmUpCompletesTheWarmUpFuture() throws Exception {
+        var path = Files.createTempFile("sql-templates", ".bin");
+        var signature = TemplateSnapshot.signature("test");
+        TemplateSnapshot.write(path, signature, List.of(new TemplateSnapshot.Entry("SELECT ?\u0000l", "SELECT ?", null)));
+
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var snapshot = new TemplateSnapshot(path, signature, null, List::of, entries -> {
+            started.countDown();
+            // Ignores interrupts, like a parse does
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+            return entries.size();
+        });
+        try {
+            var warmUp = snapshot.getWarmUp();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            snapshot.close();
+            assertTrue(warmUp.isDone(), "close does not wait for the warm-up");
+            assertThrows(CompletionException.class, warmUp::join);
+        } finally {
+            release.countDown();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void entriesRoundTripAndOtherSignaturesAreIgnored() throws Exception {
+        var path = Files.createTempFile("sql-templates", ".bin");
+        try {
+            var entries = List.of(
+                new TemplateSnapshot.Entry("SELECT * FROM t WHERE id = ?\u0000l", "SELECT * FROM t WHERE id = ?", null),
+                new TemplateSnapshot.Entry("DELETE FROM t WHERE name = ?\u0000s", "DELETE FROM t WHERE name = ?", List.of("w")));
+            TemplateSnapshot.write(path, 1L, entries);
+            assertEquals(entries, TemplateSnapshot.read(path, 1L));
+            assertEquals(List.of(), TemplateSnapshot.read(path, 2L));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -1,116 +1,1506 @@
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.execute.Execute;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.UnionOp;
+import net.sf.jsqlparser.statement.select.Values;
+import net.sf.jsqlparser.statement.update.Update;
 import net.sf.jsqlparser.util.deparser.ExpressionDeParser;
 import net.sf.jsqlparser.util.deparser.SelectDeParser;
 import net.sf.jsqlparser.util.deparser.StatementDeParser;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class SqlToPreparedStatementConverter {
     
     @Value
-    @Builder
+    @Builder(toBuilder = true)
     public static class ConversionResult {
         String preparedSql;
-        List<Object> parameters;
+        /** Parameter values with numbers kept unboxed */
+        @Builder.Default
+        ParameterBuffer parameterBuffer = ParameterBuffer.EMPTY;
         @Builder.Default
         List<String> warnings = new ArrayList<>();
+        /** False when the result must not be cached: it depends on statistics still being sampled, or the parse was bypassed */
+        @Builder.Default
+        boolean cacheable = true;
+        /** True while the text injection checks have not run on this result; they are left to the async validator */
+        @Builder.Default
+        boolean textChecksPending = false;
+        
+        /**
+         * Boxed view of the parameters; values are only boxed when read
+         */
+        public List<Object> getParameters() {
+            return parameterBuffer.asList();
+        }
         
         public boolean hasWarnings() {
             return !warnings.isEmpty();
         }
+        
+        public static class ConversionResultBuilder {
+            /**
+             * Set the parameters from a list of values, for callers built against the List-based result
+             */
+            public ConversionResultBuilder parameters(List<Object> parameters) {
+                return parameterBuffer(ParameterBuffer.of(parameters));
+            }
+        }
+    }
+    
+    /**
+     * How literals are located in the SQL text
+     */
+    public enum ConversionMode {
+        /** Full JSqlParser AST, deparsed back with literals replaced */
+        PARSER,
+        /** Single-pass lexer over the text for plain DML, falling back to PARSER on anything it is unsure about */
+        LEXER
+    }
+    
+    /**
+     * How statements are checked for injection
+     */
+    public enum ValidationMode {
+        /** Pattern scan over the raw SQL text, separate from parsing */
+        TEXT,
+        /**
+         * Checks on the parsed statement during the same deparse pass that extracts literals,
+         * so quotes, comments and semicolons inside string literals are never mistaken for code
+         */
+        AST
     }
     
-    // Pre-compiled patterns for better performance (JDK 21 optimizations)
-    private static final List<Pattern> SUSPICIOUS_PATTERNS = List.of(
-        Pattern.compile("union.*select", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("';.*--", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("';.*(drop|delete|insert|update)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("benchmark\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("sleep\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("waitfor\\s+delay", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("xp_cmdshell", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("sp_executesql", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("exec(ute)?\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("load_file\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("into\\s+outfile", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("information_schema", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("pg_sleep\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("dbms_pipe\\.receive_message", Pattern.CASE_INSENSITIVE)
+    /**
+     * Converter tunables, applied with {@link #configure(ConverterConfig)}
+     */
+    @Value
+    @Builder(toBuilder = true)
+    public static class ConverterConfig {
+        /** Cache conversions by exact SQL text; false re-parses on every call */
+        @Builder.Default
+        boolean cacheEnabled = true;
+        /** Maximum number of cached conversions */
+        @Builder.Default
+        int cacheMaxEntries = 10_000;
+        /** Maximum cache weight, measured in characters of original plus prepared SQL */
+        @Builder.Default
+        long cacheMaxWeight = 32L * 1024 * 1024;
+        /** Reuse the prepared SQL of already converted statements that differ only in literal values */
+        @Builder.Default
+        boolean templateCacheEnabled = true;
+        /** Maximum number of remembered statement shapes */
+        @Builder.Default
+        int templateCacheMaxEntries = 10_000;
+        @Builder.Default
+        ConversionMode conversionMode = ConversionMode.PARSER;
+        /** Quoting and comment rules used when SQL text is scanned without the parser */
+        @Builder.Default
+        SqlDialect dialect = SqlDialect.ANSI;
+        /** Idle PreparedStatements kept per connection by createPreparedStatement; 0 disables statement caching */
+        @Builder.Default
+        int statementCacheSize = 0;
+        /** AST validation only covers parsed statements; lexer conversions keep the text checks */
+        @Builder.Default
+        ValidationMode validationMode = ValidationMode.TEXT;
+        /**
+         * Rewrite IN lists of literals so lists of different lengths share one prepared SQL; the array
+         * form needs a dialect with array parameters and pads elsewhere
+         */
+        @Builder.Default
+        InListNormalization inListNormalization = InListNormalization.NONE;
+        /**
+         * Literals kept in the prepared SQL for the planner. Kept LIMIT and OFFSET numbers are part of the
+         * template key; statements with any other kept literal always go through the parser.
+         */
+        @Builder.Default
+        LiteralInliningPolicy literalInlining = LiteralInliningPolicy.NONE;
+        /** Bind through per-template binding plans (typed nulls, no per-value type dispatch); up to templateCacheMaxEntries plans */
+        @Builder.Default
+        boolean bindingPlansEnabled = true;
+        /**
+         * Where createPreparedStatement runs the text injection checks. Under the async policies their
+         * warnings go to warningSink instead of the ConversionResult; AST findings stay inline. Every
+         * other entry point, convertSqlToPrepared included, still runs the text checks inline.
+         */
+        @Builder.Default
+        AsyncSqlValidator.Policy validationPolicy = AsyncSqlValidator.Policy.SYNC;
+        @Builder.Default
+        AsyncSqlValidator.WarningSink warningSink = AsyncSqlValidator.LOGGING_SINK;
+        /** Threads of the async validation executor */
+        @Builder.Default
+        int validationThreads = 2;
+        /** Pending async checks; beyond it log-only drops checks and reject-before-execute validates inline */
+        @Builder.Default
+        int validationQueueSize = 4_096;
+        /** Stage timings and counters; the no-op default does not even read the clock */
+        @Builder.Default
+        ConverterMetrics metrics = ConverterMetrics.NOOP;
+        /** Count conversions per template in a fixed-size sketch, read with getHotTemplates */
+        @Builder.Default
+        boolean hotTemplateTrackingEnabled = false;
+        /** Templates the sketch tracks at once; hot ones stay tracked however many distinct statements arrive */
+        @Builder.Default
+        int hotTemplateCapacity = 1_024;
+        /** Idle deparser chains kept for reuse by parser conversions; 0 builds a new chain per call */
+        @Builder.Default
+        int deparserPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        /** Longest a single parse may take; null parses on the calling thread with no limit */
+        @Builder.Default
+        Duration parseTimeout = null;
+        /** Threads that run parses under parseTimeout; an overrunning parse holds its thread until it ends */
+        @Builder.Default
+        int parseThreads = 2;
+        /** SQL texts that failed or overran, remembered so retries fail at once; 0 disables */
+        @Builder.Default
+        int negativeCacheMaxEntries = 1_000;
+        /** Whether SQL that cannot be parsed in time is rejected or passed through unconverted */
+        @Builder.Default
+        ParseGuard.FailurePolicy parseFailurePolicy = ParseGuard.FailurePolicy.REJECT;
+        /** Consecutive parse timeouts that open the circuit breaker, refusing all parses for parseBreakerCooldown */
+        @Builder.Default
+        int parseBreakerThreshold = 5;
+        @Builder.Default
+        Duration parseBreakerCooldown = Duration.ofSeconds(30);
+        /**
+         * File the template cache is saved to and warmed up from on configure; null disables snapshots.
+         * With hot template tracking only the shapes of tracked templates are saved, busiest first.
+         */
+        @Builder.Default
+        Path templateSnapshotPath = null;
+        /** How often the snapshot is rewritten; null only writes it at shutdown and on the next configure */
+        @Builder.Default
+        Duration templateSnapshotInterval = Duration.ofMinutes(5);
+        /**
+         * Snapshot templates loaded, busiest first. Each is verified by parsing a statement of its shape
+         * before it is cached, which also compiles the parser before traffic needs it; 0 loads none.
+         */
+        @Builder.Default
+        int warmUpParseCount = 500;
+        /** Bind literals as the JDBC type of the column they are compared with or assigned to, read from cached metadata */
+        @Builder.Default
+        boolean parameterTypeResolution = false;
+        /** How long column and parameter types read from JDBC metadata are trusted before they are read again */
+        @Builder.Default
+        Duration metadataCacheTtl = Duration.ofMinutes(10);
+        /** Tables whose column types are cached for parameter type resolution */
+        @Builder.Default
+        int metadataCacheMaxTables = 1_024;
+    }
+    
+    /**
+     * Prepared SQL shared by every statement with the same literal-free shape
+     */
+    @Value
+    private static class Template {
+        String preparedSql;
+        /** AST validation warnings; they only depend on structure, so every statement of the shape shares them */
+        List<String> warnings;
+    }
+    
+    /** Marks shapes whose parsed parameters did not line up with the scanned literals */
+    private static final Template UNFIT_TEMPLATE = new Template(null, null);
+    
+    private static volatile ConverterConfig config = ConverterConfig.builder().build();
+    private static volatile BoundedLruCache<String, ConversionResult> conversionCache = newConversionCache(config);
+    private static volatile BoundedLruCache<String, Template> templateCache = newTemplateCache(config);
+    private static volatile PreparedStatementCache statementCache = newStatementCache(config);
+    private static volatile BoundedLruCache<String, BindingPlan> bindingPlanCache = newBindingPlanCache(config);
+    private static volatile AsyncSqlValidator asyncValidator = newAsyncValidator(config);
+    private static volatile ParseGuard parseGuard = newParseGuard(config);
+    private static volatile HotTemplateTracker hotTemplates = newHotTemplateTracker(config);
+    private static volatile LiteralInliningPolicy.CardinalityHints cardinalityHints = newCardinalityHints(config);
+    private static volatile ParameterTypeResolver typeResolver = newTypeResolver(config);
+    private static volatile ArrayBlockingQueue<ConversionContext> contextPool = newContextPool(config);
+    private static volatile TemplateSnapshot templateSnapshot = newTemplateSnapshot(config);
+    
+    // All patterns are matched together in a single pass over the SQL
+    private static final InjectionPatternScanner SUSPICIOUS_PATTERNS = InjectionPatternScanner.compile(List.of(
+        "union.*select",
+        "';.*--",
+        "';.*(drop|delete|insert|update)",
+        "benchmark\\s*\\(",
+        "sleep\\s*\\(",
+        "waitfor\\s+delay",
+        "xp_cmdshell",
+        "sp_executesql",
+        "exec(ute)?\\s*\\(",
+        "load_file\\s*\\(",
+        "into\\s+outfile",
+        "information_schema",
+        "pg_sleep\\s*\\(",
+        "dbms_pipe\\.receive_message"
+    ));
+    
+    // Function calls flagged by AST validation, lower case
+    private static final Set<String> SUSPICIOUS_FUNCTIONS = Set.of(
+        "benchmark", "sleep", "pg_sleep", "xp_cmdshell", "sp_executesql", "exec", "execute",
+        "load_file", "dbms_pipe.receive_message", "dbms_lock.sleep"
     );
     
+    /**
+     * Replace the active configuration; caches are rebuilt (and emptied) since their
+     * contents depend on the settings they were produced with
+     */
+    public static synchronized void configure(ConverterConfig newConfig) {
+        config = newConfig;
+        conversionCache = newConversionCache(newConfig);
+        templateCache = newTemplateCache(newConfig);
+        bindingPlanCache = newBindingPlanCache(newConfig);
+        hotTemplates = newHotTemplateTracker(newConfig);
+        cardinalityHints = newCardinalityHints(newConfig);
+        typeResolver = newTypeResolver(newConfig);
+        contextPool = newContextPool(newConfig);
+        
+        var previousStatements = statementCache;
+        statementCache = newStatementCache(newConfig);
+        if (previousStatements != null) {
+            previousStatements.closeAll();
+        }
+        
+        var previousValidator = asyncValidator;
+        asyncValidator = newAsyncValidator(newConfig);
+        if (previousValidator != null) {
+            previousValidator.close();
+        }
+        
+        var previousGuard = parseGuard;
+        parseGuard = newParseGuard(newConfig);
+        if (previousGuard != null) {
+            previousGuard.close();
+        }
+        
+        // The previous snapshot saves the templates of its own cache before the new one loads the file
+        var previousSnapshot = templateSnapshot;
+        if (previousSnapshot != null) {
+            previousSnapshot.close();
+        }
+        templateSnapshot = newTemplateSnapshot(newConfig);
+    }
+    
+    public static ConverterConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Hit, miss and eviction counters of the conversion cache, or null when caching is disabled
+     */
+    public static BoundedLruCache.Stats getCacheStats() {
+        var cache = conversionCache;
+        return cache == null ? null : cache.stats();
+    }
+    
+    /**
+     * Hit, miss and eviction counters of the literal-insensitive template cache, or null when it is disabled
+     */
+    public static BoundedLruCache.Stats getTemplateCacheStats() {
+        var cache = templateCache;
+        return cache == null ? null : cache.stats();
+    }
+    
+    /**
+     * Hit, miss and eviction counters of the binding plan cache, or null when binding plans are disabled
+     */
+    public static BoundedLruCache.Stats getBindingPlanCacheStats() {
+        var cache = bindingPlanCache;
+        return cache == null ? null : cache.stats();
+    }
+    
+    /**
+     * Hit, miss and eviction counters of the per-connection statement cache, or null when it is disabled
+     */
+    public static PreparedStatementCache.Stats getStatementCacheStats() {
+        var cache = statementCache;
+        return cache == null ? null : cache.stats();
+    }
+    
+    /**
+     * Hit and miss counters of the negative parse cache, or null when it is disabled
+     */
+    public static BoundedLruCache.Stats getNegativeCacheStats() {
+        var guard = parseGuard;
+        return guard == null ? null : guard.getNegativeCacheStats();
+    }
+    
+    /**
+     * Whether parses are currently refused after repeated parse timeouts
+     */
+    public static boolean isParseBreakerOpen() {
+        var guard = parseGuard;
+        return guard != null && guard.isBreakerOpen();
+    }
+    
+    /**
+     * Columns whose equality literals are currently kept inline by the cardinality hints; empty when they are disabled
+     */
+    public static Set<String> getLowCardinalityColumns() {
+        var hints = cardinalityHints;
+        return hints == null ? Set.of() : hints.lowCardinalityColumns();
+    }
+    
+    /**
+     * Forget the column and parameter types read from JDBC metadata, e.g. after DDL; otherwise they
+     * are read again once metadataCacheTtl has passed
+     */
+    public static void invalidateMetadata() {
+        var resolver = typeResolver;
+        if (resolver != null) {
+            resolver.invalidate();
+        }
+    }
+    
+    /**
+     * Completes with the number of templates loaded from the snapshot once warm-up is over;
+     * already complete with 0 when snapshots are disabled
+     */
+    public static CompletableFuture<Integer> getTemplateWarmUp() {
+        var snapshot = templateSnapshot;
+        return snapshot == null ? CompletableFuture.completedFuture(0) : snapshot.getWarmUp();
+    }
+    
+    /**
+     * Write the template snapshot now; returns the number of templates saved, 0 when snapshots are disabled
+     */
+    public static int saveTemplateSnapshot() throws IOException {
+        var snapshot = templateSnapshot;
+        return snapshot == null ? 0 : snapshot.save();
+    }
+    
+    /**
+     * The most converted templates since the last configure, busiest first; empty when tracking is disabled
+     */
+    public static List<HotTemplateTracker.HotTemplate> getHotTemplates(int limit) {
+        var tracker = hotTemplates;
+        return tracker == null ? List.of() : tracker.top(limit);
+    }
+    
+    /**
+     * Close the cached statements of a connection; call before closing a connection used with statement caching
+     */
+    public static void closeCachedStatements(Connection connection) {
+        var cache = statementCache;
+        if (cache != null) {
+            cache.evict(connection);
+        }
+    }
+    
+    public static void clearCache() {
+        var cache = conversionCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        var templates = templateCache;
+        if (templates != null) {
+            templates.clear();
+        }
+        var plans = bindingPlanCache;
+        if (plans != null) {
+            plans.clear();
+        }
+    }
+    
+    private static BoundedLruCache<String, ConversionResult> newConversionCache(ConverterConfig config) {
+        if (!config.isCacheEnabled()) {
+            return null;
+        }
+        return new BoundedLruCache<>(config.getCacheMaxEntries(), config.getCacheMaxWeight(),
+            (sql, result) -> sql.length() + result.getPreparedSql().length());
+    }
+    
+    private static BoundedLruCache<String, Template> newTemplateCache(ConverterConfig config) {
+        if (!config.isTemplateCacheEnabled()) {
+            return null;
+        }
+        return new BoundedLruCache<>(config.getTemplateCacheMaxEntries(), config.getCacheMaxWeight(),
+            (key, template) -> key.length() + (template.getPreparedSql() == null ? 0 : template.getPreparedSql().length()));
+    }
+    
+    private static BoundedLruCache<String, BindingPlan> newBindingPlanCache(ConverterConfig config) {
+        if (!config.isBindingPlansEnabled()) {
+            return null;
+        }
+        return new BoundedLruCache<>(config.getTemplateCacheMaxEntries(), config.getCacheMaxWeight(),
+            (preparedSql, plan) -> preparedSql.length() + plan.size());
+    }
+    
+    private static PreparedStatementCache newStatementCache(ConverterConfig config) {
+        return config.getStatementCacheSize() > 0 ? new PreparedStatementCache(config.getStatementCacheSize()) : null;
+    }
+    
+    private static HotTemplateTracker newHotTemplateTracker(ConverterConfig config) {
+        return config.isHotTemplateTrackingEnabled() ? new HotTemplateTracker(config.getHotTemplateCapacity()) : null;
+    }
+    
+    private static LiteralInliningPolicy.CardinalityHints newCardinalityHints(ConverterConfig config) {
+        var policy = config.getLiteralInlining();
+        return policy.getMaxInlineCardinality() > 0 ? new LiteralInliningPolicy.CardinalityHints(policy) : null;
+    }
+    
+    private static ParameterTypeResolver newTypeResolver(ConverterConfig config) {
+        if (!config.isParameterTypeResolution()) {
+            return null;
+        }
+        return new ParameterTypeResolver(config.getTemplateCacheMaxEntries(), config.getMetadataCacheMaxTables(),
+            config.getMetadataCacheTtl());
+    }
+    
+    private static ArrayBlockingQueue<ConversionContext> newContextPool(ConverterConfig config) {
+        return config.getDeparserPoolSize() > 0 ? new ArrayBlockingQueue<>(config.getDeparserPoolSize()) : null;
+    }
+    
+    private static TemplateSnapshot newTemplateSnapshot(ConverterConfig config) {
+        var templates = templateCache;
+        var resolver = typeResolver;
+        var tracker = hotTemplates;
+        if (config.getTemplateSnapshotPath() == null || templates == null) {
+            return null;
+        }
+        return new TemplateSnapshot(config.getTemplateSnapshotPath(), snapshotSignature(config),
+            config.getTemplateSnapshotInterval(), () -> snapshotEntries(templates, tracker),
+            entries -> warmUp(templates, resolver, entries, config));
+    }
+    
+    /**
+     * Stamp of everything that decides which prepared SQL a shape gets
+     */
+    private static long snapshotSignature(ConverterConfig config) {
+        return TemplateSnapshot.signature(
+            String.valueOf(CCJSqlParserUtil.class.getPackage().getImplementationVersion()),
+            config.getDialect().name(),
+            config.getValidationMode().name(),
+            config.getInListNormalization().effectiveFor(config.getDialect()).name(),
+            config.getLiteralInlining().toString());
+    }
+    
+    /**
+     * The shapes to save. With a hot template tracker, the shapes of the tracked templates ordered
+     * by their estimated conversions, busiest first; without one, every cached shape in no
+     * particular order.
+     */
+    private static List<TemplateSnapshot.Entry> snapshotEntries(BoundedLruCache<String, Template> templates,
+                                                                HotTemplateTracker tracker) {
+        Map<String, Long> counts = null;
+        if (tracker != null) {
+            counts = new HashMap<>();
+            for (var hot : tracker.top(Integer.MAX_VALUE)) {
+                counts.put(hot.getPreparedSql(), hot.getCount());
+            }
+        }
+        var hotCounts = counts;
+        var entries = new ArrayList<TemplateSnapshot.Entry>();
+        templates.forEach((key, template) -> {
+            // Unfit shapes parse every time anyway
+            if (template != UNFIT_TEMPLATE && (hotCounts == null || hotCounts.containsKey(template.getPreparedSql()))) {
+                entries.add(new TemplateSnapshot.Entry(key, template.getPreparedSql(), template.getWarnings()));
+            }
+        });
+        if (hotCounts != null) {
+            entries.sort(Comparator.comparingLong((TemplateSnapshot.Entry entry) -> hotCounts.get(entry.getPreparedSql())).reversed());
+        }
+        return entries;
+    }
+    
+    /**
+     * Fill the template cache from a snapshot, busiest shapes first. The file is not trusted: each
+     * entry is cached only once {@link #verifiedTemplate} derived the same template from its shape.
+     * The parses also compile and pool the parser and deparsers before the first statements arrive,
+     * and register the parameters' target columns with the type resolver.
+     *
+     * @return the number of templates cached
+     */
+    private static int warmUp(BoundedLruCache<String, Template> templates, ParameterTypeResolver resolver,
+                              List<TemplateSnapshot.Entry> entries, ConverterConfig config) {
+        var loads = Math.min(config.getWarmUpParseCount(), entries.size());
+        var loaded = 0;
+        // Interrupted when the snapshot is closed, e.g. by a configure mid warm-up
+        for (int i = 0; i < loads && !Thread.currentThread().isInterrupted(); i++) {
+            var entry = entries.get(i);
+            try {
+                var template = verifiedTemplate(entry, resolver, config);
+                if (template != null) {
+                    templates.put(entry.getShapeKey(), template);
+                    loaded++;
+                } else {
+                    log.debug("Snapshot template does not match its shape: {}", entry.getPreparedSql());
+                }
+            } catch (Exception e) {
+                log.debug("Warm-up parse failed for: {}", entry.getPreparedSql(), e);
+            }
+        }
+        if (loaded < loads) {
+            log.info("Skipped {} of {} snapshot templates that could not be verified", loads - loaded, loads);
+        }
+        return loaded;
+    }
+    
+    /**
+     * Derive a snapshot entry the way traffic would have: convert a statement of the entry's shape
+     * and keep the entry only when that statement has the entry's shape key and parses to the
+     * entry's prepared SQL with exactly the scanned literals as its parameters. Warnings come from
+     * this parse, not from the file. Null when the entry does not check out.
+     */
+    private static Template verifiedTemplate(TemplateSnapshot.Entry entry, ParameterTypeResolver resolver,
+                                             ConverterConfig config) throws JSQLParserException {
+        var sql = sampleStatement(entry.getShapeKey());
+        if (sql == null) {
+            return null;
+        }
+        var inLists = config.getInListNormalization().effectiveFor(config.getDialect());
+        var inlining = config.getLiteralInlining();
+        var shape = SqlLiteralScanner.scan(sql, config.getDialect(), SqlLiteralScanner.Mode.FINGERPRINT, inLists, inlining);
+        if (shape == null || !shape.getKey().equals(entry.getShapeKey())) {
+            return null;
+        }
+        
+        var astValidation = config.getValidationMode() == ValidationMode.AST;
+        var context = acquireContext();
+        try {
+            // Without cardinality hints: warm-up parses are not traffic
+            context.begin(astValidation, inLists, inlining, null, resolver != null);
+            parseStatement(sql, astValidation).accept(context.statementDeParser);
+            var preparedSql = context.buffer.toString();
+            var parameters = context.expressionDeParser.getParameters();
+            if (!preparedSql.equals(entry.getPreparedSql()) || !shape.getLiterals().equals(parameters)) {
+                return null;
+            }
+            var targets = context.expressionDeParser.targetColumns();
+            if (resolver != null && targets != null && targets.length == parameters.size()) {
+                resolver.registerTargets(preparedSql, targets);
+            }
+            return new Template(preparedSql, astValidation ? List.copyOf(context.findings) : null);
+        } finally {
+            releaseContext(context);
+        }
+    }
+    
+    /**
+     * A statement of the shape, with a made-up literal of the key's type at each ?, or null when a
+     * type has no plain spelling (IN-list arrays); such shapes are learned again from traffic
+     */
+    private static String sampleStatement(String shapeKey) {
+        var separator = shapeKey.lastIndexOf('\u0000');
+        if (separator < 0) {
+            return null;
+        }
+        var types = shapeKey.substring(separator + 1);
+        var sql = new StringBuilder(separator + types.length() * 4);
+        var next = 0;
+        for (int i = 0; i < separator; i++) {
+            var c = shapeKey.charAt(i);
+            if (c != '?') {
+                sql.append(c);
+                continue;
+            }
+            if (next == types.length()) {
+                return null;
+            }
+            var literal = switch (types.charAt(next++)) {
+                case 'l' -> "1";
+                case 'd' -> "1.5";
+                case 's' -> "'x'";
+                case 'h' -> "X'00'";
+                case 'n' -> "NULL";
+                default -> null;
+            };
+            if (literal == null) {
+                return null;
+            }
+            sql.append(literal);
+        }
+        return next == types.length() ? sql.toString() : null;
+    }
+    
+    private static ParseGuard newParseGuard(ConverterConfig config) {
+        if (config.getParseTimeout() == null && config.getNegativeCacheMaxEntries() <= 0) {
+            return null;
+        }
+        return new ParseGuard(config.getParseTimeout(), config.getParseThreads(), config.getNegativeCacheMaxEntries(),
+            config.getParseBreakerThreshold(), config.getParseBreakerCooldown());
+    }
+    
+    private static AsyncSqlValidator newAsyncValidator(ConverterConfig config) {
+        if (config.getValidationPolicy() == AsyncSqlValidator.Policy.SYNC) {
+            return null;
+        }
+        return new AsyncSqlValidator(config.getValidationPolicy(), SqlToPreparedStatementConverter::timedValidation,
+            config.getWarningSink(), config.getValidationThreads(), config.getValidationQueueSize());
+    }
+    
     /**
      * Generic method to convert any SQL string to PreparedStatement format
-     * with SQL injection prevention checks
+     * with SQL injection prevention checks.
+     * Results are cached by exact SQL text, so repeated statements skip parsing entirely;
+     * statements that only differ in literal values reuse the prepared SQL of their shape.
+     * The text checks always run before the result is returned, under the async policies too.
      */
     public static ConversionResult convertSqlToPrepared(String originalSql) throws Exception {
-        var warnings = validateSqlForInjection(originalSql);
-        var statement = CCJSqlParserUtil.parse(originalSql);
-        var parameters = new ArrayList<>();
-        var buffer = new StringBuilder();
-        
-        // Modern switch expression for parameter extraction (JDK 21)
-        var expressionDeParser = new ExpressionDeParser() {
-            private void addParameter(Object value) {
-                parameters.add(value);
-                this.getBuffer().append("?");
-            }
-            
-            @Override public void visit(StringValue stringValue) { addParameter(stringValue.getValue()); }
-            @Override public void visit(LongValue longValue) { addParameter(longValue.getValue()); }
-            @Override public void visit(DoubleValue doubleValue) { addParameter(doubleValue.getValue()); }
-            @Override public void visit(DateValue dateValue) { addParameter(dateValue.getValue()); }
-            @Override public void visit(TimeValue timeValue) { addParameter(timeValue.getValue()); }
-            @Override public void visit(TimestampValue timestampValue) { addParameter(timestampValue.getValue()); }
-            @Override public void visit(NullValue nullValue) { addParameter(null); }
-            @Override public void visit(HexValue hexValue) { addParameter(hexValue.getValue()); }
-        };
-        
-        var selectDeParser = new SelectDeParser(expressionDeParser, buffer);
-        expressionDeParser.setSelectVisitor(selectDeParser);
-        expressionDeParser.setBuffer(buffer);
-        
-        var statementDeParser = new StatementDeParser(expressionDeParser, selectDeParser, buffer);
-        statement.accept(statementDeParser);
+        return convert(originalSql, false);
+    }
+    
+    /**
+     * Convert through the conversion cache; with asyncChecks the caller has submitted the text
+     * checks to the async validator, otherwise checks left pending run here
+     */
+    private static ConversionResult convert(String originalSql, boolean asyncChecks) throws Exception {
+        var event = new SqlConverterEvents.ConversionEvent();
+        event.begin();
+        var started = hotTemplates == null ? 0L : System.nanoTime();
+        
+        var cache = conversionCache;
+        if (cache == null) {
+            return recorded(originalSql, checked(originalSql, convertDeferred(originalSql), asyncChecks), false, event, started);
+        }
+        
+        var cached = cache.get(originalSql);
+        if (cached != null) {
+            return recorded(originalSql, checked(originalSql, cached, asyncChecks), true, event, started);
+        }
+        
+        // Cached with its checks still pending, so every later hit outside createPreparedStatement runs them
+        var result = convertDeferred(originalSql);
+        if (result.isCacheable()) {
+            cache.put(originalSql, result);
+        }
+        return recorded(originalSql, checked(originalSql, result, asyncChecks), false, event, started);
+    }
+    
+    private static ConversionResult checked(String originalSql, ConversionResult result, boolean asyncChecks) {
+        return asyncChecks ? result : withTextChecks(originalSql, result);
+    }
+    
+    /**
+     * The result with the text checks it still lacks run inline and their warnings added
+     */
+    private static ConversionResult withTextChecks(String originalSql, ConversionResult result) {
+        if (!result.isTextChecksPending()) {
+            return result;
+        }
+        var warnings = new ArrayList<>(result.getWarnings());
+        warnings.addAll(timedValidation(originalSql));
+        return result.toBuilder()
+            .warnings(Collections.unmodifiableList(warnings))
+            .textChecksPending(false)
+            .build();
+    }
+    
+    /**
+     * Report a served conversion to the metrics, the hot-template sketch and, when it passes the
+     * JFR threshold, as an event
+     */
+    private static ConversionResult recorded(String originalSql, ConversionResult result, boolean cacheHit,
+                                             SqlConverterEvents.ConversionEvent event, long started) {
+        var parameterCount = result.getParameterBuffer().size();
+        var warningCount = result.getWarnings().size();
+        config.getMetrics().recordConversion(parameterCount, warningCount);
+        
+        var tracker = hotTemplates;
+        // started is 0 when tracking was switched on mid-conversion
+        if (tracker != null && started != 0L) {
+            tracker.record(result.getPreparedSql(), System.nanoTime() - started, parameterCount);
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.sqlLength = originalSql.length();
+            event.fingerprint = SqlConverterEvents.fingerprint(result.getPreparedSql());
+            event.parameterCount = parameterCount;
+            event.warningCount = warningCount;
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+        return result;
+    }
+    
+    private static long startTimer(ConverterMetrics metrics) {
+        return metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+    
+    private static void stopTimer(ConverterMetrics metrics, ConverterMetrics.Stage stage, long started) {
+        if (metrics.isEnabled()) {
+            metrics.recordStage(stage, System.nanoTime() - started);
+        }
+    }
+    
+    /**
+     * Convert without the conversion cache, text checks included
+     */
+    static ConversionResult convertUncached(String originalSql) throws Exception {
+        return withTextChecks(originalSql, convertDeferred(originalSql));
+    }
+    
+    /**
+     * Convert without the conversion cache; under the async policies the text checks are left pending
+     */
+    private static ConversionResult convertDeferred(String originalSql) throws Exception {
+        var cfg = config;
+        var metrics = cfg.getMetrics();
+        if (cfg.getConversionMode() == ConversionMode.LEXER) {
+            var started = startTimer(metrics);
+            var lexed = SqlLiteralScanner.scan(originalSql, cfg.getDialect(), SqlLiteralScanner.Mode.LEXER,
+                cfg.getInListNormalization().effectiveFor(cfg.getDialect()), cfg.getLiteralInlining());
+            stopTimer(metrics, ConverterMetrics.Stage.LEX, started);
+            if (lexed != null) {
+                return ConversionResult.builder()
+                    .preparedSql(lexed.getTemplate())
+                    .parameterBuffer(lexed.getLiterals())
+                    .warnings(Collections.unmodifiableList(inlineTextWarnings(originalSql)))
+                    .textChecksPending(textChecksDeferred())
+                    .build();
+            }
+        }
+        
+        var validation = cfg.getValidationMode();
+        var templates = templateCache;
+        if (templates == null) {
+            return parseAndConvert(originalSql, validation);
+        }
+        
+        var started = startTimer(metrics);
+        var shape = SqlLiteralScanner.scan(originalSql, cfg.getDialect(), SqlLiteralScanner.Mode.FINGERPRINT,
+            cfg.getInListNormalization().effectiveFor(cfg.getDialect()), cfg.getLiteralInlining());
+        var template = shape == null ? null : templates.get(shape.getKey());
+        stopTimer(metrics, ConverterMetrics.Stage.TEMPLATE_LOOKUP, started);
+        if (shape == null) {
+            return parseAndConvert(originalSql, validation);
+        }
+        
+        if (template != null && template != UNFIT_TEMPLATE) {
+            // Known shape: the scanned literals are the parameters, no parse needed
+            var warnings = template.getWarnings() != null
+                ? template.getWarnings()
+                : Collections.unmodifiableList(inlineTextWarnings(originalSql));
+            return ConversionResult.builder()
+                .preparedSql(template.getPreparedSql())
+                .parameterBuffer(shape.getLiterals())
+                .warnings(warnings)
+                .textChecksPending(template.getWarnings() == null && textChecksDeferred())
+                .build();
+        }
+        
+        var result = parseAndConvert(originalSql, validation);
+        if (template == null && result.isCacheable()) {
+            // Only trust the shape when the parser extracted exactly the literals the scanner saw,
+            // which also rules out shapes with literals kept inline by the inlining policy; bypassed
+            // statements are not cacheable, so a refused parse leaves the shape unknown, not unfit
+            var fits = shape.getLiterals().equals(result.getParameterBuffer());
+            var structuralWarnings = validation == ValidationMode.AST ? result.getWarnings() : null;
+            templates.put(shape.getKey(), fits ? new Template(result.getPreparedSql(), structuralWarnings) : UNFIT_TEMPLATE);
+        }
+        return result;
+    }
+    
+    static ConversionResult parseAndConvert(String originalSql, ValidationMode validation) throws Exception {
+        // AST findings are collected by the deparsers below, in the same pass that extracts literals
+        var astValidation = validation == ValidationMode.AST;
+        var warnings = astValidation ? new ArrayList<String>() : inlineTextWarnings(originalSql);
+        
+        var cfg = config;
+        var metrics = cfg.getMetrics();
+        var started = startTimer(metrics);
+        Statement statement;
+        try {
+            var guard = parseGuard;
+            statement = guard == null
+                ? parseStatement(originalSql, astValidation)
+                : guard.parse(originalSql, () -> parseStatement(originalSql, astValidation));
+        } catch (SqlRejectedException e) {
+            // Refused by a check, not a failed parse: passing it through would skip the check
+            throw e;
+        } catch (JSQLParserException e) {
+            metrics.recordParseFailure();
+            if (cfg.getParseFailurePolicy() == ParseGuard.FailurePolicy.BYPASS) {
+                return bypassed(originalSql, warnings, astValidation, e);
+            }
+            throw e;
+        }
+        stopTimer(metrics, ConverterMetrics.Stage.PARSE, started);
+        
+        started = startTimer(metrics);
+        var context = acquireContext();
+        try {
+            var resolver = typeResolver;
+            context.begin(astValidation, cfg.getInListNormalization().effectiveFor(cfg.getDialect()),
+                cfg.getLiteralInlining(), cardinalityHints, resolver != null);
+            statement.accept(context.statementDeParser);
+            stopTimer(metrics, ConverterMetrics.Stage.DEPARSE, started);
+            warnings.addAll(context.findings);
+            
+            var preparedSql = context.buffer.toString();
+            var parameters = context.expressionDeParser.getParameters();
+            var targets = context.expressionDeParser.targetColumns();
+            if (resolver != null && targets != null && targets.length == parameters.size()) {
+                resolver.registerTargets(preparedSql, targets);
+            }
+            
+            // Results may be shared through the cache, so hand out read-only views; the context's
+            // buffers are copied out since it is reused
+            return ConversionResult.builder()
+                .preparedSql(preparedSql)
+                .parameterBuffer(parameters.copy())
+                .warnings(Collections.unmodifiableList(warnings))
+                .cacheable(!context.expressionDeParser.isProvisional())
+                .textChecksPending(!astValidation && textChecksDeferred())
+                .build();
+        } finally {
+            releaseContext(context);
+        }
+    }
+    
+    private static ConversionContext acquireContext() {
+        var pool = contextPool;
+        var context = pool == null ? null : pool.poll();
+        return context != null ? context : new ConversionContext();
+    }
+    
+    private static void releaseContext(ConversionContext context) {
+        var pool = contextPool;
+        if (pool != null && context.isPoolable()) {
+            context.clear();
+            pool.offer(context);
+        }
+    }
+    
+    /**
+     * Deparser chain with its output buffer and parameter scratch space, reused across conversions.
+     * Contexts are pooled in a bounded queue rather than held per thread, since with virtual threads
+     * a ThreadLocal would build one per task and never reuse it.
+     */
+    private static final class ConversionContext {
+        // Contexts that grew past these are dropped instead of pinning their memory in the pool
+        private static final int MAX_POOLED_SQL_LENGTH = 64 * 1024;
+        private static final int MAX_POOLED_PARAMETERS = 4_096;
         
+        final StringBuilder buffer = new StringBuilder(256);
+        final Set<String> findings = new LinkedHashSet<>();
+        final LiteralExtractingDeParser expressionDeParser = new LiteralExtractingDeParser();
+        final ValidatingSelectDeParser selectDeParser = new ValidatingSelectDeParser(expressionDeParser, buffer);
+        final ValidatingStatementDeParser statementDeParser =
+            new ValidatingStatementDeParser(expressionDeParser, selectDeParser, buffer);
+        
+        ConversionContext() {
+            expressionDeParser.setSelectVisitor(selectDeParser);
+            expressionDeParser.setBuffer(buffer);
+        }
+        
+        /**
+         * Set the options of the next conversion; AST findings are only collected when validating,
+         * columns are only sampled when given cardinality hints, and the target column of each
+         * parameter is only tracked for the type resolver
+         */
+        void begin(boolean astValidation, InListNormalization inLists, LiteralInliningPolicy inlining,
+                   LiteralInliningPolicy.CardinalityHints hints, boolean trackTargets) {
+            var target = astValidation ? findings : null;
+            expressionDeParser.reset(target, inLists, inlining, hints, trackTargets);
+            selectDeParser.setFindings(target);
+            statementDeParser.setFindings(target);
+        }
+        
+        /**
+         * Drop the output of the last conversion, keeping the allocated capacity
+         */
+        void clear() {
+            buffer.setLength(0);
+            findings.clear();
+            expressionDeParser.getParameters().truncate(0);
+            expressionDeParser.forgetNodes();
+        }
+        
+        boolean isPoolable() {
+            return buffer.capacity() <= MAX_POOLED_SQL_LENGTH
+                && expressionDeParser.getParameters().capacity() <= MAX_POOLED_PARAMETERS;
+        }
+    }
+    
+    private static Statement parseStatement(String sql, boolean singleStatement) throws JSQLParserException {
+        return singleStatement ? parseSingleStatement(sql) : CCJSqlParserUtil.parse(sql);
+    }
+    
+    /**
+     * The SQL as given, without parameters, for statements the parser failed on under the BYPASS policy;
+     * statements refused with {@link SqlRejectedException} are never bypassed.
+     * Never cached, neither as a conversion nor as its shape's template: the failure may be a timeout,
+     * a lack of parse capacity or the open breaker, and the next attempt may well parse.
+     */
+    private static ConversionResult bypassed(String originalSql, List<String> warnings, boolean astValidation,
+                                             JSQLParserException failure) {
+        if (astValidation) {
+            // The AST checks never ran, so fall back to the text checks
+            warnings.addAll(inlineTextWarnings(originalSql));
+        }
+        warnings.add(STR."Statement passed through without parameterization, parse failed: \{failure.getMessage()}");
         return ConversionResult.builder()
-            .preparedSql(statementDeParser.getBuffer().toString())
-            .parameters(parameters)
-            .warnings(warnings)
+            .preparedSql(originalSql)
+            .warnings(Collections.unmodifiableList(warnings))
+            .cacheable(false)
+            .textChecksPending(textChecksDeferred())
             .build();
     }
     
+    /**
+     * Parse exactly one statement (a trailing semicolon is fine), rejecting stacked statements by name
+     * instead of as a generic syntax error, with an exception the BYPASS policy does not bypass
+     */
+    private static Statement parseSingleStatement(String sql) throws JSQLParserException {
+        var statements = CCJSqlParserUtil.parseStatements(sql).getStatements();
+        if (statements.size() != 1) {
+            throw new SqlRejectedException(STR."Stacked query injection: expected one statement, found \{statements.size()}");
+        }
+        return statements.get(0);
+    }
+    
+    /**
+     * Replaces every literal with ? and collects its value, except the literals the inlining policy
+     * keeps. Given a findings set it also flags suspicious function calls and constant conditions in
+     * OR branches (the classic OR 1=1). When tracking targets it notes the column each parameter is
+     * compared with or assigned to, for the type resolver.
+     */
+    private static class LiteralExtractingDeParser extends ExpressionDeParser {
+        private final ParameterBuffer parameters = new ParameterBuffer();
+        // Literal nodes of the statement being deparsed that stay in the SQL, by identity
+        private final Set<Expression> inlined = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Set<String> findings;
+        private InListNormalization inLists = InListNormalization.NONE;
+        private LiteralInliningPolicy inlining = LiteralInliningPolicy.NONE;
+        private LiteralInliningPolicy.CardinalityHints hints;
+        private boolean provisional;
+        // Target tracking: column of each value node, tables by alias or name, and the column of each ? written
+        private final Map<Expression, Column> targets = new IdentityHashMap<>();
+        private final Map<String, Table> tables = new HashMap<>();
+        private final Set<Table> distinctTables = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Column> slotColumns = new ArrayList<>();
+        private boolean trackTargets;
+        
+        /**
+         * Set where findings go (null to skip validation), how IN lists are rewritten, which literals
+         * stay inline and whether parameter targets are tracked
+         */
+        void reset(Set<String> findings, InListNormalization inLists, LiteralInliningPolicy inlining,
+                   LiteralInliningPolicy.CardinalityHints hints, boolean trackTargets) {
+            this.findings = findings;
+            this.inLists = inLists;
+            this.inlining = inlining;
+            this.hints = hints;
+            this.provisional = false;
+            this.trackTargets = trackTargets;
+            forgetNodes();
+        }
+        
+        /**
+         * Drop the references to the last statement's nodes
+         */
+        void forgetNodes() {
+            inlined.clear();
+            targets.clear();
+            tables.clear();
+            distinctTables.clear();
+            slotColumns.clear();
+        }
+        
+        ParameterBuffer getParameters() {
+            return parameters;
+        }
+        
+        /**
+         * Whether a literal was parameterized only because its column's cardinality is still being sampled
+         */
+        boolean isProvisional() {
+            return provisional;
+        }
+        
+        // Every literal leaves a ? behind; numbers go into the buffer without boxing
+        private void placeholder(Expression literal) {
+            this.getBuffer().append("?");
+            if (trackTargets) {
+                slotColumns.add(targets.get(literal));
+            }
+        }
+        
+        // Kept literals are written by the base deparser, exactly as they were given
+        @Override public void visit(StringValue stringValue) { if (inlined.contains(stringValue)) super.visit(stringValue); else { parameters.addString(stringValue.getValue()); placeholder(stringValue); } }
+        @Override public void visit(LongValue longValue) { if (inlined.contains(longValue)) super.visit(longValue); else { parameters.addLong(longValue.getValue()); placeholder(longValue); } }
+        @Override public void visit(DoubleValue doubleValue) { if (inlined.contains(doubleValue)) super.visit(doubleValue); else { parameters.addDouble(doubleValue.getValue()); placeholder(doubleValue); } }
+        @Override public void visit(DateValue dateValue) { if (inlined.contains(dateValue)) super.visit(dateValue); else { parameters.add(dateValue.getValue()); placeholder(dateValue); } }
+        @Override public void visit(TimeValue timeValue) { if (inlined.contains(timeValue)) super.visit(timeValue); else { parameters.add(timeValue.getValue()); placeholder(timeValue); } }
+        @Override public void visit(TimestampValue timestampValue) { if (inlined.contains(timestampValue)) super.visit(timestampValue); else { parameters.add(timestampValue.getValue()); placeholder(timestampValue); } }
+        @Override public void visit(NullValue nullValue) { if (inlined.contains(nullValue)) super.visit(nullValue); else { parameters.addNull(); placeholder(nullValue); } }
+        @Override public void visit(HexValue hexValue) { if (inlined.contains(hexValue)) super.visit(hexValue); else { parameters.addString(hexValue.getValue()); placeholder(hexValue); } }
+        
+        @Override public void visit(EqualsTo equalsTo) { compared(equalsTo.getLeftExpression(), equalsTo.getRightExpression(), true); super.visit(equalsTo); }
+        @Override public void visit(NotEqualsTo notEqualsTo) { compared(notEqualsTo.getLeftExpression(), notEqualsTo.getRightExpression(), true); super.visit(notEqualsTo); }
+        @Override public void visit(GreaterThan greaterThan) { compared(greaterThan.getLeftExpression(), greaterThan.getRightExpression(), false); super.visit(greaterThan); }
+        @Override public void visit(GreaterThanEquals greaterThanEquals) { compared(greaterThanEquals.getLeftExpression(), greaterThanEquals.getRightExpression(), false); super.visit(greaterThanEquals); }
+        @Override public void visit(MinorThan minorThan) { compared(minorThan.getLeftExpression(), minorThan.getRightExpression(), false); super.visit(minorThan); }
+        @Override public void visit(MinorThanEquals minorThanEquals) { compared(minorThanEquals.getLeftExpression(), minorThanEquals.getRightExpression(), false); super.visit(minorThanEquals); }
+        
+        @Override
+        public void visit(Between between) {
+            compared(between.getLeftExpression(), between.getBetweenExpressionStart(), false);
+            compared(between.getLeftExpression(), between.getBetweenExpressionEnd(), false);
+            super.visit(between);
+        }
+        
+        @Override
+        public void visit(JdbcParameter jdbcParameter) {
+            // Only seen when parsing prepared SQL, as the template warm-up does
+            if (trackTargets) {
+                slotColumns.add(targets.get(jdbcParameter));
+            }
+            super.visit(jdbcParameter);
+        }
+        
+        /**
+         * A comparison of a column with a value: note its target, then apply the inlining policy
+         */
+        private void compared(Expression left, Expression right, boolean equality) {
+            if (trackTargets) {
+                target(left, right);
+                target(right, left);
+            }
+            inlineCompared(left, right, equality);
+        }
+        
+        /**
+         * Note that the value, when it becomes a parameter, targets the column
+         */
+        private void target(Expression column, Expression value) {
+            if (column instanceof Column targetColumn && (isExtracted(value) || value instanceof JdbcParameter)) {
+                targets.put(value, targetColumn);
+            }
+        }
+        
+        /**
+         * Note the columns assigned pairwise, as in UPDATE SET; ignored unless the counts match
+         */
+        void targetPairs(List<? extends Expression> columns, List<? extends Expression> values) {
+            if (trackTargets && columns != null && values != null && columns.size() == values.size()) {
+                for (int i = 0; i < columns.size(); i++) {
+                    target(columns.get(i), values.get(i));
+                }
+            }
+        }
+        
+        /**
+         * Note the columns of INSERT ... VALUES, given as one row or as a list of rows
+         */
+        void targetRows(List<Column> columns, ExpressionList<?> rows) {
+            if (!trackTargets || columns == null || rows == null) {
+                return;
+            }
+            if (!rows.isEmpty() && rows.stream().allMatch(ExpressionList.class::isInstance)) {
+                rows.forEach(row -> targetPairs(columns, (ExpressionList<?>) row));
+            } else {
+                targetPairs(columns, rows);
+            }
+        }
+        
+        /**
+         * Note a table of the statement, so its columns can be resolved by alias or name
+         */
+        void targetTable(Table table) {
+            if (!trackTargets || table == null || table.getName() == null) {
+                return;
+            }
+            distinctTables.add(table);
+            tables.putIfAbsent(unquoted(table.getName()).toLowerCase(Locale.ROOT), table);
+            if (table.getAlias() != null) {
+                tables.put(unquoted(table.getAlias().getName()).toLowerCase(Locale.ROOT), table);
+            }
+        }
+        
+        /**
+         * Target column of each ? written, null where there is none or it cannot be told which table
+         * it belongs to; null when nothing was found. An unqualified column only resolves in a
+         * statement over a single table.
+         */
+        ParameterTypeResolver.ColumnRef[] targetColumns() {
+            if (!trackTargets || slotColumns.stream().allMatch(Objects::isNull)) {
+                return null;
+            }
+            var columns = new ParameterTypeResolver.ColumnRef[slotColumns.size()];
+            for (int i = 0; i < columns.length; i++) {
+                var column = slotColumns.get(i);
+                var table = column == null ? null : tableOf(column);
+                if (table != null) {
+                    columns[i] = new ParameterTypeResolver.ColumnRef(table.getSchemaName(), table.getName(), column.getColumnName());
+                }
+            }
+            return columns;
+        }
+        
+        private Table tableOf(Column column) {
+            var qualifier = column.getTable();
+            if (qualifier != null && qualifier.getName() != null) {
+                return tables.get(unquoted(qualifier.getName()).toLowerCase(Locale.ROOT));
+            }
+            return distinctTables.size() == 1 ? distinctTables.iterator().next() : null;
+        }
+        
+        /**
+         * Mark the literal side of a column comparison to stay inline when the policy keeps it
+         */
+        private void inlineCompared(Expression left, Expression right, boolean equality) {
+            if (left instanceof Column column && isExtracted(right)) {
+                inlineValues(column, List.of(right), equality);
+            } else if (right instanceof Column column && isExtracted(left)) {
+                inlineValues(column, List.of(left), equality);
+            }
+        }
+        
+        /**
+         * Mark values compared with the column to stay inline when its name matches or, for equality,
+         * when the cardinality hints call it low-cardinality; returns whether they were marked
+         */
+        private boolean inlineValues(Column column, List<? extends Expression> values, boolean equality) {
+            if (!inlining.isActive() || column.getColumnName() == null) {
+                return false;
+            }
+            var name = unquoted(column.getColumnName());
+            var keep = inlining.isInlineColumn(name);
+            if (!keep && equality && hints != null) {
+                keep = true;
+                // Every value is counted, even once the answer is known
+                for (var value : values) {
+                    switch (hints.observe(name, value.toString())) {
+                        case INLINE -> { }
+                        case PARAMETERIZE -> keep = false;
+                        case PENDING -> {
+                            keep = false;
+                            provisional = true;
+                        }
+                    }
+                }
+            }
+            if (keep) {
+                inlined.addAll(values);
+            }
+            return keep;
+        }
+        
+        private static String unquoted(String name) {
+            var quoted = name.length() >= 2 && (name.charAt(0) == '"' || name.charAt(0) == '`' || name.charAt(0) == '[');
+            return quoted ? name.substring(1, name.length() - 1) : name;
+        }
+        
+        /**
+         * Mark the LIMIT, OFFSET, ORDER BY and GROUP BY literals of the select the policy keeps; called
+         * before the select is deparsed
+         */
+        void inlineClauses(Select select) {
+            if (inlining.inlines(LiteralInliningPolicy.Clause.LIMIT)) {
+                if (select.getLimit() != null) {
+                    inlineLiteral(select.getLimit().getRowCount());
+                }
+                if (select.getFetch() != null) {
+                    inlineLiteral(select.getFetch().getExpression());
+                }
+                if (select instanceof PlainSelect plainSelect && plainSelect.getTop() != null) {
+                    inlineLiteral(plainSelect.getTop().getExpression());
+                }
+            }
+            if (inlining.inlines(LiteralInliningPolicy.Clause.OFFSET)) {
+                if (select.getLimit() != null) {
+                    inlineLiteral(select.getLimit().getOffset());
+                }
+                if (select.getOffset() != null) {
+                    inlineLiteral(select.getOffset().getOffset());
+                }
+            }
+            if (inlining.inlines(LiteralInliningPolicy.Clause.ORDER_BY) && select.getOrderByElements() != null) {
+                select.getOrderByElements().forEach(element -> inlineLiteral(element.getExpression()));
+            }
+            if (inlining.inlines(LiteralInliningPolicy.Clause.GROUP_BY) && select instanceof PlainSelect plainSelect
+                    && plainSelect.getGroupBy() != null) {
+                plainSelect.getGroupBy().getGroupByExpressionList().forEach(expression -> inlineLiteral((Expression) expression));
+            }
+        }
+        
+        private void inlineLiteral(Expression expression) {
+            if (expression != null && isExtracted(expression)) {
+                inlined.add(expression);
+            }
+        }
+        
+        @Override
+        public void visit(Function function) {
+            var name = function.getName();
+            if (findings != null && name != null && SUSPICIOUS_FUNCTIONS.contains(name.toLowerCase(Locale.ROOT))) {
+                findings.add(STR."Suspicious function call detected: \{name}");
+            }
+            super.visit(function);
+        }
+        
+        @Override
+        public void visit(InExpression inExpression) {
+            if (trackTargets && inExpression.getRightExpression() instanceof ExpressionList<?> targeted) {
+                targeted.forEach(value -> target(inExpression.getLeftExpression(), value));
+            }
+            // A list kept inline is written as it is, never normalized
+            if (inlining.isActive() && inExpression.getLeftExpression() instanceof Column column
+                    && inExpression.getRightExpression() instanceof ExpressionList<?> values
+                    && !values.isEmpty() && values.stream().allMatch(LiteralExtractingDeParser::isExtracted)
+                    && inlineValues(column, values, true)) {
+                super.visit(inExpression);
+                return;
+            }
+            if (inLists == InListNormalization.NONE || inExpression.isGlobal()
+                    || inExpression.getOldOracleJoinSyntax() != SupportsOldOracleJoinSyntax.NO_ORACLE_JOIN
+                    || !(inExpression.getRightExpression() instanceof ExpressionList<?> list)
+                    || list.isEmpty() || !list.stream().allMatch(LiteralExtractingDeParser::isExtracted)) {
+                super.visit(inExpression);
+                return;
+            }
+            inExpression.getLeftExpression().accept(this);
+            var buffer = this.getBuffer();
+            buffer.append(' ');
+            
+            // Extract the values as usual, then replace their placeholders with the normalized list
+            var listStart = buffer.length();
+            var first = parameters.size();
+            list.forEach(value -> value.accept(this));
+            buffer.setLength(listStart);
+            buffer.append(inLists.normalize(parameters, first, inExpression.isNot()));
+            alignTargets(first);
+        }
+        
+        /**
+         * Give every parameter of a normalized IN list the column of its first value, since padding
+         * and arrays change how many there are
+         */
+        private void alignTargets(int first) {
+            if (!trackTargets || slotColumns.size() < first) {
+                return;
+            }
+            var column = slotColumns.size() > first ? slotColumns.get(first) : null;
+            slotColumns.subList(first, slotColumns.size()).clear();
+            while (slotColumns.size() < parameters.size()) {
+                slotColumns.add(column);
+            }
+        }
+        
+        @Override
+        public void visit(OrExpression orExpression) {
+            if (findings != null && (isConstantComparison(orExpression.getLeftExpression())
+                    || isConstantComparison(orExpression.getRightExpression()))) {
+                findings.add("Constant condition in OR detected - possible tautology injection");
+            }
+            super.visit(orExpression);
+        }
+        
+        private static boolean isConstantComparison(Expression expression) {
+            return expression instanceof ComparisonOperator comparison
+                && isLiteral(comparison.getLeftExpression())
+                && isLiteral(comparison.getRightExpression());
+        }
+        
+        // Literals this deparser turns into parameters
+        private static boolean isExtracted(Expression expression) {
+            return isLiteral(expression) || expression instanceof DateValue
+                || expression instanceof TimeValue || expression instanceof TimestampValue;
+        }
+        
+        private static boolean isLiteral(Expression expression) {
+            return expression instanceof StringValue || expression instanceof LongValue
+                || expression instanceof DoubleValue || expression instanceof HexValue
+                || expression instanceof NullValue;
+        }
+    }
+    
+    /**
+     * Flags UNION selects, SELECT INTO and information_schema access when given a findings set, and
+     * marks the clause literals the inlining policy keeps before each select is written
+     */
+    private static class ValidatingSelectDeParser extends SelectDeParser {
+        private final LiteralExtractingDeParser literals;
+        private Set<String> findings;
+        
+        ValidatingSelectDeParser(LiteralExtractingDeParser expressionDeParser, StringBuilder buffer) {
+            super(expressionDeParser, buffer);
+            this.literals = expressionDeParser;
+        }
+        
+        void setFindings(Set<String> findings) {
+            this.findings = findings;
+        }
+        
+        @Override
+        public void visit(SetOperationList list) {
+            if (findings != null && list.getOperations().stream().anyMatch(UnionOp.class::isInstance)) {
+                findings.add("UNION query detected - review for injected SELECT");
+            }
+            literals.inlineClauses(list);
+            super.visit(list);
+        }
+        
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            if (findings != null && plainSelect.getIntoTables() != null && !plainSelect.getIntoTables().isEmpty()) {
+                findings.add("SELECT INTO detected - query writes its result set");
+            }
+            literals.inlineClauses(plainSelect);
+            super.visit(plainSelect);
+        }
+        
+        @Override
+        public void visit(Table table) {
+            if (findings != null && "information_schema".equalsIgnoreCase(table.getSchemaName())) {
+                findings.add("Access to information_schema detected");
+            }
+            literals.targetTable(table);
+            super.visit(table);
+        }
+    }
+    
+    /**
+     * Flags EXEC/EXECUTE of dangerous procedures when given a findings set, and notes the target
+     * table and assigned columns of INSERT, UPDATE and DELETE
+     */
+    private static class ValidatingStatementDeParser extends StatementDeParser {
+        private final LiteralExtractingDeParser literals;
+        private Set<String> findings;
+        
+        ValidatingStatementDeParser(LiteralExtractingDeParser expressionDeParser, SelectDeParser selectDeParser,
+                                    StringBuilder buffer) {
+            super(expressionDeParser, selectDeParser, buffer);
+            this.literals = expressionDeParser;
+        }
+        
+        void setFindings(Set<String> findings) {
+            this.findings = findings;
+        }
+        
+        @Override
+        public void visit(Execute execute) {
+            var name = execute.getName();
+            if (findings != null && name != null && SUSPICIOUS_FUNCTIONS.contains(name.toLowerCase(Locale.ROOT))) {
+                findings.add(STR."Suspicious procedure execution detected: \{name}");
+            }
+            super.visit(execute);
+        }
+        
+        @Override
+        public void visit(Insert insert) {
+            literals.targetTable(insert.getTable());
+            if (insert.getSelect() instanceof Values values) {
+                literals.targetRows(insert.getColumns(), values.getExpressions());
+            }
+            super.visit(insert);
+        }
+        
+        @Override
+        public void visit(Update update) {
+            literals.targetTable(update.getTable());
+            if (update.getUpdateSets() != null) {
+                update.getUpdateSets().forEach(set -> literals.targetPairs(set.getColumns(), set.getValues()));
+            }
+            super.visit(update);
+        }
+        
+        @Override
+        public void visit(Delete delete) {
+            literals.targetTable(delete.getTable());
+            super.visit(delete);
+        }
+    }
+    
+    /**
+     * Text checks run during conversion only under the SYNC policy; under the async policies the
+     * result is marked {@link ConversionResult#isTextChecksPending() pending} instead
+     */
+    private static List<String> inlineTextWarnings(String sql) {
+        return textChecksDeferred() ? new ArrayList<>() : timedValidation(sql);
+    }
+    
+    private static boolean textChecksDeferred() {
+        return config.getValidationPolicy() != AsyncSqlValidator.Policy.SYNC;
+    }
+    
+    /**
+     * The text checks convertSqlToPrepared runs in TEXT validation mode, for SQL the converter only
+     * saw part of, like the later rows of a split insert; empty in AST mode, where literal values
+     * add no findings
+     */
+    static List<String> textWarnings(String sql) {
+        return config.getValidationMode() == ValidationMode.TEXT ? timedValidation(sql) : List.of();
+    }
+    
+    private static List<String> timedValidation(String sql) {
+        var metrics = config.getMetrics();
+        var event = new SqlConverterEvents.ValidationEvent();
+        event.begin();
+        var started = startTimer(metrics);
+        var warnings = validateSqlForInjection(sql);
+        stopTimer(metrics, ConverterMetrics.Stage.VALIDATION, started);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.sqlLength = sql.length();
+            event.warningCount = warnings.size();
+            event.commit();
+        }
+        return warnings;
+    }
+    
     /**
      * Validate SQL for potential injection patterns using modern Java features
      */
-    private static List<String> validateSqlForInjection(String sql) {
+    static List<String> validateSqlForInjection(String sql) {
         var warnings = new ArrayList<String>();
         
-        // Pattern matching with modern Java (JDK 21)
-        SUSPICIOUS_PATTERNS.parallelStream()
-            .filter(pattern -> pattern.matcher(sql).find())
-            .map(pattern -> STR."Potentially suspicious pattern detected: \{pattern.pattern()}")
-            .forEach(warnings::add);
+        // One pass finds every pattern and also counts semicolons and comment markers
+        var scan = SUSPICIOUS_PATTERNS.scan(sql);
+        for (var pattern : scan.getMatchedPatterns()) {
+            warnings.add(STR."Potentially suspicious pattern detected: \{pattern}");
+        }
         
         // Enhanced validation using switch expressions
-        var semicolonCount = sql.chars().filter(ch -> ch == ';').count();
-        switch ((int) semicolonCount) {
+        switch (scan.getSemicolons()) {
             case 0, 1 -> { /* Normal case */ }
             default -> warnings.add("Multiple semicolons detected - possible stacked query injection");
         }
         
-        // Modern string operations
-        var hasComments = sql.contains("/*") || sql.contains("--") || sql.contains("#");
-        if (hasComments) {
+        if (scan.hasComments()) {
             warnings.add("SQL comments detected - review for potential injection");
         }
         
@@ -118,45 +1508,97 @@ public class SqlToPreparedStatementConverter {
     }
     
     /**
-     * Create a fully configured PreparedStatement with security validation
+     * Create a fully configured PreparedStatement with security validation.
+     * With statement caching enabled the returned statement is a reusable wrapper:
+     * closing it returns it to the connection's cache.
+     * Under an async validation policy the text checks run while the statement is converted and prepared.
      */
     public static PreparedStatement createPreparedStatement(Connection connection, String originalSql) 
             throws Exception, SQLException {
-        var result = convertSqlToPrepared(originalSql);
+        var validator = asyncValidator;
+        var verdict = validator == null ? null : validator.submit(originalSql);
         
-        // Enhanced logging with structured output
-        if (result.hasWarnings()) {
-            log.warn("SQL Security Warnings for: {}", originalSql);
-            result.getWarnings().forEach(warning -> log.warn("  - {}", warning));
-        }
+        // Without a validator the pending checks, if any, run inline
+        var result = convert(originalSql, verdict != null);
+        logWarnings(originalSql, result);
         
-        var pstmt = connection.prepareStatement(result.getPreparedSql());
+        var metrics = config.getMetrics();
+        var event = new SqlConverterEvents.PrepareEvent();
+        event.begin();
+        var started = startTimer(metrics);
+        var pstmt = prepareStatement(connection, result.getPreparedSql());
+        stopTimer(metrics, ConverterMetrics.Stage.PREPARE, started);
+        try {
+            started = startTimer(metrics);
+            bindParameters(pstmt, result.getPreparedSql(), result.getParameterBuffer());
+            stopTimer(metrics, ConverterMetrics.Stage.BIND, started);
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
         
-        // Set parameters using enhanced for loop with index (JDK 21)
-        var params = result.getParameters();
-        for (int i = 0; i < params.size(); i++) {
-            setParameter(pstmt, i + 1, params.get(i));
+        event.end();
+        if (event.shouldCommit()) {
+            event.sqlLength = originalSql.length();
+            event.fingerprint = SqlConverterEvents.fingerprint(result.getPreparedSql());
+            event.parameterCount = result.getParameterBuffer().size();
+            event.warningCount = result.getWarnings().size();
+            event.commit();
         }
         
-        return pstmt;
+        return verdict == null ? pstmt : validator.guard(pstmt, verdict);
+    }
+    
+    /**
+     * Enhanced logging with structured output
+     */
+    static void logWarnings(String originalSql, ConversionResult result) {
+        if (result.hasWarnings()) {
+            log.warn("SQL Security Warnings for: {}", originalSql);
+            result.getWarnings().forEach(warning -> log.warn("  - {}", warning));
+        }
+    }
+    
+    /**
+     * Split a multi-row INSERT ... VALUES of literals into a fixed-size row template and its rows,
+     * or return null when the statement is anything else
+     */
+    public static MultiRowInsert splitMultiRowInsert(String originalSql) {
+        return MultiRowInsert.parse(originalSql, config.getDialect());
     }
     
     /**
-     * Generic parameter setter with enhanced pattern matching (JDK 21)
+     * Prepare through the statement cache when it is enabled
      */
-    private static void setParameter(PreparedStatement pstmt, int index, Object value) throws SQLException {
-        switch (value) {
-            case null -> pstmt.setNull(index, java.sql.Types.NULL);
-            case String s -> pstmt.setString(index, s);
-            case Integer i -> pstmt.setInt(index, i);
-            case Long l -> pstmt.setLong(index, l);
-            case Double d -> pstmt.setDouble(index, d);
-            case java.sql.Date date -> pstmt.setDate(index, date);
-            case java.sql.Time time -> pstmt.setTime(index, time);
-            case java.sql.Timestamp ts -> pstmt.setTimestamp(index, ts);
-            case Boolean b -> pstmt.setBoolean(index, b);
-            default -> pstmt.setObject(index, value);
+    static PreparedStatement prepareStatement(Connection connection, String preparedSql) throws SQLException {
+        var cache = statementCache;
+        return cache == null ? connection.prepareStatement(preparedSql) : cache.acquire(connection, preparedSql);
+    }
+    
+    /**
+     * Bind with the template's binding plan, building it on first use or when the literal types or
+     * the resolved column types changed. Without plans the buffer binds itself, still without boxing,
+     * unless column types were resolved.
+     */
+    static void bindParameters(PreparedStatement pstmt, String preparedSql, ParameterBuffer params) throws SQLException {
+        var resolver = typeResolver;
+        var targetTypes = resolver == null ? null : resolver.resolve(pstmt, preparedSql, params.size());
+        var plans = bindingPlanCache;
+        if (plans == null) {
+            if (targetTypes == null) {
+                params.bindTo(pstmt);
+            } else {
+                BindingPlan.create(pstmt, params, targetTypes).bind(pstmt, params);
+            }
+            return;
+        }
+        
+        var plan = plans.get(preparedSql);
+        if (plan == null || !plan.matches(params, targetTypes)) {
+            plan = BindingPlan.create(pstmt, params, targetTypes);
+            plans.put(preparedSql, plan);
         }
+        plan.bind(pstmt, params);
     }
     
     // Demonstration with modern Java features
@@ -207,6 +1649,85 @@ public class SqlToPreparedStatementConverter {
             } catch (Exception e) {
                 System.out.println(STR."Failed to parse malicious SQL (this is good): \{e.getMessage()}");
             }
+
+            // Repeated SQL is served from the conversion cache
+            System.out.println("\n" + "=".repeat(50));
+            convertSqlToPrepared(complexSql);
+            var stats = getCacheStats();
+            System.out.println(STR."Cache: \{stats.getHits()} hits, \{stats.getMisses()} misses, \{stats.getEvictions()} evictions");
+            
+            // Same shape with other literals takes the template path; it must match a full parse
+            var otherLiterals = complexSql.replace("25", "31").replace("'active'", "'pending'");
+            var fromTemplate = convertSqlToPrepared(otherLiterals);
+            var fromParser = parseAndConvert(otherLiterals, getConfig().getValidationMode());
+            System.out.println(STR."Template path matches parser: \{fromTemplate.equals(fromParser)}");
+            
+            // Lexer mode copies the text instead of rebuilding it from an AST
+            configure(getConfig().toBuilder().conversionMode(ConversionMode.LEXER).build());
+            var lexed = convertSqlToPrepared(complexSql);
+            System.out.println(STR."Lexer mode: \{lexed.getPreparedSql()} \{lexed.getParameters()}");
+            
+            // AST validation ignores look-alikes inside literals and sees the real constructs
+            configure(getConfig().toBuilder()
+                .conversionMode(ConversionMode.PARSER)
+                .validationMode(ValidationMode.AST)
+                .build());
+            var harmless = convertSqlToPrepared("SELECT * FROM notes WHERE body = 'use -- or ; or /* freely'");
+            var tautology = convertSqlToPrepared("SELECT * FROM users WHERE name = 'x' OR 'a' = 'a'");
+            var union = convertSqlToPrepared("SELECT name FROM users WHERE id = 1 UNION SELECT table_name FROM information_schema.tables");
+            System.out.println(STR."AST mode, literal look-alikes: \{harmless.getWarnings()}");
+            System.out.println(STR."AST mode, tautology: \{tautology.getWarnings()}");
+            System.out.println(STR."AST mode, union: \{union.getWarnings()}");
+            
+            // Stage timings with the in-memory metrics
+            var metrics = new InMemoryConverterMetrics();
+            configure(getConfig().toBuilder().metrics(metrics).build());
+            for (int i = 0; i < 1_000; i++) {
+                convertSqlToPrepared(complexSql.replace("25", String.valueOf(i)));
+            }
+            metrics.snapshot().getStageNanos().forEach((stage, histogram) -> {
+                if (histogram.getCount() > 0) {
+                    System.out.println(STR."\{stage}: \{histogram.getCount()} calls, p50 \{histogram.getP50()} ns, p99 \{histogram.getP99()} ns");
+                }
+            });
+            
+            // Busiest query shapes
+            configure(getConfig().toBuilder().hotTemplateTrackingEnabled(true).build());
+            for (int i = 0; i < 1_000; i++) {
+                convertSqlToPrepared(STR."SELECT * FROM users WHERE id = \{i}");
+                if (i % 10 == 0) {
+                    convertSqlToPrepared(complexSql.replace("25", String.valueOf(i)));
+                }
+            }
+            getHotTemplates(2).forEach(hot -> System.out.println(
+                STR."\{hot.getCount()} conversions, \{Math.round(hot.averageNanos())} ns avg, \{hot.averageParameters()} params: \{hot.getPreparedSql()}"));
+            
+            // IN lists of different lengths share one prepared SQL once normalized
+            configure(getConfig().toBuilder().inListNormalization(InListNormalization.PAD_POWER_OF_TWO).build());
+            var three = convertSqlToPrepared("SELECT * FROM orders WHERE id IN (1, 2, 3)");
+            var four = convertSqlToPrepared("SELECT * FROM orders WHERE id IN (4, 5, 6, 7)");
+            System.out.println(STR."Padded IN lists: \{three.getPreparedSql()} \{three.getParameters()} / \{four.getParameters()}");
+            configure(getConfig().toBuilder()
+                .inListNormalization(InListNormalization.ARRAY_PARAMETER)
+                .dialect(SqlDialect.POSTGRESQL)
+                .build());
+            var array = convertSqlToPrepared("SELECT * FROM orders WHERE id IN (1, 2, 3)");
+            System.out.println(STR."Array IN list: \{array.getPreparedSql()} \{array.getParameters()}");
+            
+            // Templates survive a restart through the snapshot file
+            var snapshotFile = java.nio.file.Files.createTempFile("sql-templates", ".bin");
+            configure(getConfig().toBuilder().templateSnapshotPath(snapshotFile).build());
+            getTemplateWarmUp().join();
+            convertSqlToPrepared(complexSql);
+            System.out.println(STR."Saved templates: \{saveTemplateSnapshot()}");
+            clearCache();
+            configure(getConfig());
+            System.out.println(STR."Warmed up templates: \{getTemplateWarmUp().join()}");
+            
+            // With type resolution, a date string compared with a DATE column is bound as a DATE
+            configure(getConfig().toBuilder().templateSnapshotPath(null).parameterTypeResolution(true).build());
+            var dated = convertSqlToPrepared("SELECT * FROM orders o WHERE o.order_date >= '2023-01-01'");
+            System.out.println(STR."\{dated.getPreparedSql()} binds \{ParameterTypeResolver.coerce(dated.getParameters().get(0), java.sql.Types.DATE)} to a DATE column");
             
         } catch (Exception e) {
             log.error("Error in main method", e);
@@ -239,5 +1760,16 @@ public class DatabaseService {
             throw new DatabaseException("Query execution failed", e);
         }
     }
+
+    // Large exports: rows are fetched and mapped as they are written, in constant memory
+    public void exportQuery(String sql, Writer out) {
+        var options = SqlRowStream.StreamOptions.builder().fetchSize(5_000).disableAutoCommit(true).build();
+        try (var rows = SqlRowStream.stream(dataSource, sql, (rs, rowNum) -> rs.getString(1), options)) {
+            rows.forEach(line -> write(out, line));
+        } catch (Exception e) {
+            log.error("Export failed for SQL: {}", sql, e);
+            throw new DatabaseException("Export failed", e);
+        }
+    }
 }
 */
\ No newline at end of file
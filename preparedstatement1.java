@@ -11,6 +11,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class SqlToPreparedStatementConverter {
@@ -107,49 +108,48 @@ public class SqlToPreparedStatementConverter {
         return new ConversionResult(preparedSql, parameters, warnings);
     }
     
+    // Whole-input matching keeps the sql.toLowerCase().matches(".*" + pattern + ".*") semantics of the original checks
+    private static final InjectionPatternScanner SUSPICIOUS_PATTERNS = InjectionPatternScanner.compileWholeInput(Arrays.asList(
+        "union.*select",
+        "';.*--",
+        "';.*drop",
+        "';.*delete",
+        "';.*insert",
+        "';.*update",
+        "benchmark\\s*\\(",
+        "sleep\\s*\\(",
+        "waitfor\\s+delay",
+        "xp_cmdshell",
+        "sp_executesql",
+        "exec\\s*\\(",
+        "execute\\s*\\(",
+        "load_file\\s*\\(",
+        "into\\s+outfile",
+        "information_schema",
+        "pg_sleep\\s*\\(",
+        "dbms_pipe.receive_message"
+    ));
+    
     /**
      * Validate SQL for potential injection patterns that JSqlParser might not catch
      */
     private static List<String> validateSqlForInjection(String sql) {
         List<String> warnings = new ArrayList<>();
-        String sqlLower = sql.toLowerCase();
-        
-        // Check for common SQL injection patterns
-        String[] suspiciousPatterns = {
-            "union.*select",
-            "';.*--",
-            "';.*drop",
-            "';.*delete",
-            "';.*insert",
-            "';.*update",
-            "benchmark\\s*\\(",
-            "sleep\\s*\\(",
-            "waitfor\\s+delay",
-            "xp_cmdshell",
-            "sp_executesql",
-            "exec\\s*\\(",
-            "execute\\s*\\(",
-            "load_file\\s*\\(",
-            "into\\s+outfile",
-            "information_schema",
-            "pg_sleep\\s*\\(",
-            "dbms_pipe.receive_message"
-        };
         
-        for (String pattern : suspiciousPatterns) {
-            if (sqlLower.matches(".*" + pattern + ".*")) {
-                warnings.add("Potentially suspicious pattern detected: " + pattern);
-            }
+        // Check for common SQL injection patterns, all in one pass over the SQL; the scanner
+        // ignores case itself, so no lower-case copy of the SQL is made
+        InjectionPatternScanner.ScanResult scan = SUSPICIOUS_PATTERNS.scan(sql);
+        for (String pattern : scan.getMatchedPatterns()) {
+            warnings.add("Potentially suspicious pattern detected: " + pattern);
         }
         
         // Check for excessive semicolons (stacked queries)
-        long semicolonCount = sql.chars().filter(ch -> ch == ';').count();
-        if (semicolonCount > 1) {
+        if (scan.getSemicolons() > 1) {
             warnings.add("Multiple semicolons detected - possible stacked query injection");
         }
         
         // Check for comment patterns that could hide malicious code
-        if (sqlLower.contains("/*") || sqlLower.contains("--") || sqlLower.contains("#")) {
+        if (scan.hasComments()) {
             warnings.add("SQL comments detected - review for potential injection");
         }
         
@@ -87,11 +87,13 @@ public class SqlToPreparedStatementConverter {
             }
         };
         
-        SelectDeParser selectDeParser = new SelectDeParser(expressionDeParser, new StringBuilder());
+        // All deparsers must write to the same buffer, or the ? placeholders end up in one the result never reads
+        StringBuilder buffer = new StringBuilder();
+        SelectDeParser selectDeParser = new SelectDeParser(expressionDeParser, buffer);
         expressionDeParser.setSelectVisitor(selectDeParser);
-        expressionDeParser.setBuffer(new StringBuilder());
+        expressionDeParser.setBuffer(buffer);
         
-        StatementDeParser statementDeParser = new StatementDeParser(expressionDeParser, selectDeParser, new StringBuilder());
+        StatementDeParser statementDeParser = new StatementDeParser(expressionDeParser, selectDeParser, buffer);
         statement.accept(statementDeParser);
         
         String preparedSql = statementDeParser.getBuffer().toString();